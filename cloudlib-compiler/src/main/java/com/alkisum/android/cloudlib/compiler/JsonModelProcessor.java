@@ -0,0 +1,611 @@
+package com.alkisum.android.cloudlib.compiler;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+
+/**
+ * Annotation processor generating a JsonCodec for each class annotated with
+ * JsonModel. The codecs read and write the fields directly, or through their
+ * getter and setter when they are private, without any reflection.
+ *
+ * @author Alkisum
+ * @version 1.9
+ * @since 1.9
+ */
+public class JsonModelProcessor extends AbstractProcessor {
+
+    /**
+     * Name of the annotation.
+     */
+    private static final String JSON_MODEL =
+            "com.alkisum.android.cloudlib.file.json.JsonModel";
+
+    /**
+     * Suffix of the generated codecs.
+     */
+    private static final String CODEC_SUFFIX = "JsonCodec";
+
+    /**
+     * Indentation unit of the generated code.
+     */
+    private static final String INDENT = "    ";
+
+    /**
+     * Wrapper types and the JsonReader methods reading their values.
+     */
+    private static final Map<String, String> BOXED_READERS =
+            new LinkedHashMap<>();
+
+    static {
+        BOXED_READERS.put("java.lang.Boolean", "reader.nextBoolean()");
+        BOXED_READERS.put("java.lang.Byte", "(byte) reader.nextInt()");
+        BOXED_READERS.put("java.lang.Short", "(short) reader.nextInt()");
+        BOXED_READERS.put("java.lang.Integer", "reader.nextInt()");
+        BOXED_READERS.put("java.lang.Long", "reader.nextLong()");
+        BOXED_READERS.put("java.lang.Float", "(float) reader.nextDouble()");
+        BOXED_READERS.put("java.lang.Double", "reader.nextDouble()");
+        BOXED_READERS.put("java.lang.String", "reader.nextString()");
+    }
+
+    @Override
+    public final Set<String> getSupportedAnnotationTypes() {
+        return Collections.singleton(JSON_MODEL);
+    }
+
+    @Override
+    public final SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public final boolean process(final Set<? extends TypeElement> annotations,
+                                 final RoundEnvironment roundEnv) {
+        TypeElement annotation =
+                processingEnv.getElementUtils().getTypeElement(JSON_MODEL);
+        if (annotation == null) {
+            return false;
+        }
+        for (Element element : roundEnv.getElementsAnnotatedWith(annotation)) {
+            if (element.getKind() != ElementKind.CLASS) {
+                error(element, "JsonModel can only be applied to classes");
+                continue;
+            }
+            try {
+                new CodecGenerator((TypeElement) element).generate();
+            } catch (IOException e) {
+                error(element, "Cannot generate codec: " + e.getMessage());
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Report an error on the given element.
+     *
+     * @param element Element causing the error
+     * @param message Error message
+     */
+    private void error(final Element element, final String message) {
+        processingEnv.getMessager().printMessage(
+                Diagnostic.Kind.ERROR, message, element);
+    }
+
+    /**
+     * @param type Type
+     * @return true if the type is a class annotated with JsonModel
+     */
+    private boolean isModel(final TypeMirror type) {
+        if (type.getKind() != TypeKind.DECLARED) {
+            return false;
+        }
+        Element element = ((DeclaredType) type).asElement();
+        for (AnnotationMirror mirror : element.getAnnotationMirrors()) {
+            if (mirror.getAnnotationType().toString().equals(JSON_MODEL)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param element Class annotated with JsonModel
+     * @return Qualified name of the codec generated for the class
+     */
+    private String getCodecName(final TypeElement element) {
+        PackageElement packageElement =
+                processingEnv.getElementUtils().getPackageOf(element);
+        String packageName = packageElement.getQualifiedName().toString();
+        String binaryName = processingEnv.getElementUtils()
+                .getBinaryName(element).toString();
+        String simpleName = binaryName;
+        if (!packageName.isEmpty()) {
+            simpleName = binaryName.substring(packageName.length() + 1);
+        }
+        simpleName = simpleName.replace('$', '_') + CODEC_SUFFIX;
+        if (packageName.isEmpty()) {
+            return simpleName;
+        }
+        return packageName + "." + simpleName;
+    }
+
+    /**
+     * Generator of the codec of a class annotated with JsonModel.
+     */
+    private final class CodecGenerator {
+
+        /**
+         * Class annotated with JsonModel.
+         */
+        private final TypeElement model;
+
+        /**
+         * Codecs of the other models used by the class, the keys are the
+         * qualified names of the codecs and the values the constant names.
+         */
+        private final Map<String, String> codecs = new LinkedHashMap<>();
+
+        /**
+         * Counter used to name the local variables.
+         */
+        private int variableCount;
+
+        /**
+         * Flag set to true if an error has been reported.
+         */
+        private boolean failed;
+
+        /**
+         * CodecGenerator constructor.
+         *
+         * @param model Class annotated with JsonModel
+         */
+        private CodecGenerator(final TypeElement model) {
+            this.model = model;
+        }
+
+        /**
+         * Generate the codec source file.
+         *
+         * @throws IOException An error occurred while writing the file
+         */
+        private void generate() throws IOException {
+            Set<Modifier> modelModifiers = model.getModifiers();
+            if (modelModifiers.contains(Modifier.ABSTRACT)
+                    || model.getNestingKind() == NestingKind.MEMBER
+                    && !modelModifiers.contains(Modifier.STATIC)) {
+                error(model, "JsonModel classes must be concrete and"
+                        + " nested classes must be static");
+                return;
+            }
+            if (!hasDefaultConstructor()) {
+                error(model, "JsonModel classes need a non-private"
+                        + " constructor without parameter");
+                return;
+            }
+            String modelName = model.getQualifiedName().toString();
+            StringBuilder decode = new StringBuilder();
+            StringBuilder encode = new StringBuilder();
+            for (VariableElement field
+                    : ElementFilter.fieldsIn(model.getEnclosedElements())) {
+                Set<Modifier> modifiers = field.getModifiers();
+                if (modifiers.contains(Modifier.STATIC)
+                        || modifiers.contains(Modifier.TRANSIENT)) {
+                    continue;
+                }
+                addField(field, decode, encode);
+            }
+            if (failed) {
+                return;
+            }
+            String codecName = getCodecName(model);
+            int dot = codecName.lastIndexOf('.');
+            String packageName = dot == -1 ? "" : codecName.substring(0, dot);
+            String simpleName = codecName.substring(dot + 1);
+
+            StringBuilder out = new StringBuilder();
+            if (!packageName.isEmpty()) {
+                out.append("package ").append(packageName).append(";\n\n");
+            }
+            out.append("import android.util.JsonReader;\n")
+                    .append("import android.util.JsonToken;\n")
+                    .append("import android.util.JsonWriter;\n\n")
+                    .append("import com.alkisum.android.cloudlib.file.json"
+                            + ".JsonCodec;\n\n")
+                    .append("import java.io.IOException;\n\n")
+                    .append("/**\n * Codec of {@link ").append(modelName)
+                    .append("}, generated by JsonModelProcessor.\n */\n")
+                    .append("public final class ").append(simpleName)
+                    .append(" implements JsonCodec<").append(modelName)
+                    .append("> {\n\n");
+            for (Map.Entry<String, String> codec : codecs.entrySet()) {
+                out.append(INDENT).append("private static final ")
+                        .append(codec.getKey()).append(' ')
+                        .append(codec.getValue()).append(" = new ")
+                        .append(codec.getKey()).append("();\n\n");
+            }
+            out.append(INDENT).append("@Override\n")
+                    .append(INDENT).append("public Class<").append(modelName)
+                    .append("> getType() {\n")
+                    .append(INDENT).append(INDENT).append("return ")
+                    .append(modelName).append(".class;\n")
+                    .append(INDENT).append("}\n\n");
+            out.append(INDENT).append("@Override\n")
+                    .append(INDENT).append("public ").append(modelName)
+                    .append(" decode(final JsonReader reader)"
+                            + " throws IOException {\n");
+            indent(out, 2).append("if (reader.peek() == JsonToken.NULL) {\n");
+            indent(out, 3).append("reader.nextNull();\n");
+            indent(out, 3).append("return null;\n");
+            indent(out, 2).append("}\n");
+            indent(out, 2).append(modelName).append(" value = new ")
+                    .append(modelName).append("();\n");
+            indent(out, 2).append("reader.beginObject();\n");
+            indent(out, 2).append("while (reader.hasNext()) {\n");
+            indent(out, 3).append("switch (reader.nextName()) {\n");
+            out.append(decode);
+            indent(out, 4).append("default:\n");
+            indent(out, 5).append("reader.skipValue();\n");
+            indent(out, 5).append("break;\n");
+            indent(out, 3).append("}\n");
+            indent(out, 2).append("}\n");
+            indent(out, 2).append("reader.endObject();\n");
+            indent(out, 2).append("return value;\n");
+            out.append(INDENT).append("}\n\n");
+            out.append(INDENT).append("@Override\n")
+                    .append(INDENT).append("public void encode("
+                            + "final JsonWriter writer, final ")
+                    .append(modelName).append(" value) throws IOException {\n");
+            indent(out, 2).append("if (value == null) {\n");
+            indent(out, 3).append("writer.nullValue();\n");
+            indent(out, 3).append("return;\n");
+            indent(out, 2).append("}\n");
+            indent(out, 2).append("writer.beginObject();\n");
+            out.append(encode);
+            indent(out, 2).append("writer.endObject();\n");
+            out.append(INDENT).append("}\n");
+            out.append("}\n");
+
+            try (Writer writer = processingEnv.getFiler()
+                    .createSourceFile(codecName, model).openWriter()) {
+                writer.write(out.toString());
+            }
+        }
+
+        /**
+         * @return true if the model has a non-private constructor without
+         * parameter
+         */
+        private boolean hasDefaultConstructor() {
+            for (ExecutableElement constructor : ElementFilter
+                    .constructorsIn(model.getEnclosedElements())) {
+                if (constructor.getParameters().isEmpty()
+                        && !constructor.getModifiers()
+                        .contains(Modifier.PRIVATE)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Add the code decoding and encoding the given field.
+         *
+         * @param field  Field
+         * @param decode Code of the decode method
+         * @param encode Code of the encode method
+         */
+        private void addField(final VariableElement field,
+                              final StringBuilder decode,
+                              final StringBuilder encode) {
+            String name = field.getSimpleName().toString();
+            if (field.getModifiers().contains(Modifier.FINAL)) {
+                error(field, "JsonModel fields cannot be final");
+                failed = true;
+                return;
+            }
+            String getter = "value." + name;
+            String setter = "value." + name + " = %s;";
+            if (field.getModifiers().contains(Modifier.PRIVATE)) {
+                String suffix = Character.toUpperCase(name.charAt(0))
+                        + name.substring(1);
+                String getterName = findMethod("get" + suffix, 0);
+                if (getterName == null
+                        && field.asType().getKind() == TypeKind.BOOLEAN) {
+                    getterName = findMethod("is" + suffix, 0);
+                }
+                String setterName = findMethod("set" + suffix, 1);
+                if (getterName == null || setterName == null) {
+                    error(field, "Private JsonModel fields need a getter and"
+                            + " a setter");
+                    failed = true;
+                    return;
+                }
+                getter = "value." + getterName + "()";
+                setter = "value." + setterName + "(%s);";
+            }
+            TypeMirror type = field.asType();
+            if (!isSupported(type)) {
+                error(field, "Unsupported JsonModel field type: " + type);
+                failed = true;
+                return;
+            }
+            indent(decode, 4).append("case \"").append(name)
+                    .append("\": {\n");
+            String variable = read(type, decode, 5);
+            indent(decode, 5).append(String.format(setter, variable))
+                    .append('\n');
+            indent(decode, 5).append("break;\n");
+            indent(decode, 4).append("}\n");
+
+            indent(encode, 2).append("writer.name(\"").append(name)
+                    .append("\");\n");
+            write(type, getter, encode, 2);
+        }
+
+        /**
+         * Find a non-private method of the model.
+         *
+         * @param name           Method name
+         * @param parameterCount Number of parameters
+         * @return Method name, null if the method does not exist
+         */
+        private String findMethod(final String name,
+                                  final int parameterCount) {
+            for (ExecutableElement method : ElementFilter
+                    .methodsIn(model.getEnclosedElements())) {
+                if (method.getSimpleName().contentEquals(name)
+                        && method.getParameters().size() == parameterCount
+                        && !method.getModifiers().contains(Modifier.PRIVATE)) {
+                    return name;
+                }
+            }
+            return null;
+        }
+
+        /**
+         * @param type Type
+         * @return true if the codec can decode and encode the type
+         */
+        private boolean isSupported(final TypeMirror type) {
+            switch (type.getKind()) {
+                case BOOLEAN:
+                case BYTE:
+                case SHORT:
+                case INT:
+                case LONG:
+                case FLOAT:
+                case DOUBLE:
+                    return true;
+                case DECLARED:
+                    if (BOXED_READERS.containsKey(erasure(type))
+                            || isEnum(type) || isModel(type)) {
+                        return true;
+                    }
+                    if (isList(type)) {
+                        List<? extends TypeMirror> arguments =
+                                ((DeclaredType) type).getTypeArguments();
+                        return arguments.size() == 1
+                                && isSupported(arguments.get(0));
+                    }
+                    return false;
+                default:
+                    return false;
+            }
+        }
+
+        /**
+         * Append the code reading a value of the given type into a new local
+         * variable.
+         *
+         * @param type  Type of the value
+         * @param out   Code
+         * @param level Indentation level
+         * @return Name of the local variable
+         */
+        private String read(final TypeMirror type, final StringBuilder out,
+                            final int level) {
+            String variable = "v" + variableCount++;
+            switch (type.getKind()) {
+                case BOOLEAN:
+                    indent(out, level).append("boolean ").append(variable)
+                            .append(" = reader.nextBoolean();\n");
+                    return variable;
+                case BYTE:
+                    indent(out, level).append("byte ").append(variable)
+                            .append(" = (byte) reader.nextInt();\n");
+                    return variable;
+                case SHORT:
+                    indent(out, level).append("short ").append(variable)
+                            .append(" = (short) reader.nextInt();\n");
+                    return variable;
+                case INT:
+                    indent(out, level).append("int ").append(variable)
+                            .append(" = reader.nextInt();\n");
+                    return variable;
+                case LONG:
+                    indent(out, level).append("long ").append(variable)
+                            .append(" = reader.nextLong();\n");
+                    return variable;
+                case FLOAT:
+                    indent(out, level).append("float ").append(variable)
+                            .append(" = (float) reader.nextDouble();\n");
+                    return variable;
+                case DOUBLE:
+                    indent(out, level).append("double ").append(variable)
+                            .append(" = reader.nextDouble();\n");
+                    return variable;
+                default:
+                    break;
+            }
+            if (isModel(type)) {
+                indent(out, level).append(type).append(' ').append(variable)
+                        .append(" = ").append(getCodec(type))
+                        .append(".decode(reader);\n");
+                return variable;
+            }
+            indent(out, level).append(type).append(' ').append(variable)
+                    .append(";\n");
+            indent(out, level).append("if (reader.peek() == JsonToken.NULL)"
+                    + " {\n");
+            indent(out, level + 1).append("reader.nextNull();\n");
+            indent(out, level + 1).append(variable).append(" = null;\n");
+            indent(out, level).append("} else {\n");
+            if (isList(type)) {
+                TypeMirror element =
+                        ((DeclaredType) type).getTypeArguments().get(0);
+                indent(out, level + 1).append(variable)
+                        .append(" = new java.util.ArrayList<>();\n");
+                indent(out, level + 1).append("reader.beginArray();\n");
+                indent(out, level + 1).append("while (reader.hasNext()) {\n");
+                String item = read(element, out, level + 2);
+                indent(out, level + 2).append(variable).append(".add(")
+                        .append(item).append(");\n");
+                indent(out, level + 1).append("}\n");
+                indent(out, level + 1).append("reader.endArray();\n");
+            } else if (isEnum(type)) {
+                indent(out, level + 1).append(variable).append(" = ")
+                        .append(erasure(type))
+                        .append(".valueOf(reader.nextString());\n");
+            } else {
+                indent(out, level + 1).append(variable).append(" = ")
+                        .append(BOXED_READERS.get(erasure(type)))
+                        .append(";\n");
+            }
+            indent(out, level).append("}\n");
+            return variable;
+        }
+
+        /**
+         * Append the code writing the given value.
+         *
+         * @param type  Type of the value
+         * @param value Expression giving the value
+         * @param out   Code
+         * @param level Indentation level
+         */
+        private void write(final TypeMirror type, final String value,
+                           final StringBuilder out, final int level) {
+            if (type.getKind().isPrimitive()) {
+                indent(out, level).append("writer.value(").append(value)
+                        .append(");\n");
+                return;
+            }
+            if (isModel(type)) {
+                indent(out, level).append(getCodec(type))
+                        .append(".encode(writer, ").append(value)
+                        .append(");\n");
+                return;
+            }
+            String variable = "v" + variableCount++;
+            indent(out, level).append(type).append(' ').append(variable)
+                    .append(" = ").append(value).append(";\n");
+            indent(out, level).append("if (").append(variable)
+                    .append(" == null) {\n");
+            indent(out, level + 1).append("writer.nullValue();\n");
+            indent(out, level).append("} else {\n");
+            if (isList(type)) {
+                TypeMirror element =
+                        ((DeclaredType) type).getTypeArguments().get(0);
+                String item = "v" + variableCount++;
+                indent(out, level + 1).append("writer.beginArray();\n");
+                indent(out, level + 1).append("for (").append(element)
+                        .append(' ').append(item).append(" : ")
+                        .append(variable).append(") {\n");
+                write(element, item, out, level + 2);
+                indent(out, level + 1).append("}\n");
+                indent(out, level + 1).append("writer.endArray();\n");
+            } else if (isEnum(type)) {
+                indent(out, level + 1).append("writer.value(").append(variable)
+                        .append(".name());\n");
+            } else if ("java.lang.Boolean".equals(erasure(type))) {
+                indent(out, level + 1).append("writer.value(").append(variable)
+                        .append(".booleanValue());\n");
+            } else {
+                indent(out, level + 1).append("writer.value(").append(variable)
+                        .append(");\n");
+            }
+            indent(out, level).append("}\n");
+        }
+
+        /**
+         * Get the constant holding the codec of the given model type.
+         *
+         * @param type Model type
+         * @return Constant name
+         */
+        private String getCodec(final TypeMirror type) {
+            String codecName = getCodecName(
+                    (TypeElement) ((DeclaredType) type).asElement());
+            String constant = codecs.get(codecName);
+            if (constant == null) {
+                constant = "CODEC_" + codecs.size();
+                codecs.put(codecName, constant);
+            }
+            return constant;
+        }
+
+        /**
+         * @param type Type
+         * @return true if the type is an enum
+         */
+        private boolean isEnum(final TypeMirror type) {
+            return type.getKind() == TypeKind.DECLARED
+                    && ((DeclaredType) type).asElement().getKind()
+                    == ElementKind.ENUM;
+        }
+
+        /**
+         * @param type Type
+         * @return true if the type is java.util.List
+         */
+        private boolean isList(final TypeMirror type) {
+            return "java.util.List".equals(erasure(type));
+        }
+
+        /**
+         * @param type Type
+         * @return Qualified name of the type without its type arguments
+         */
+        private String erasure(final TypeMirror type) {
+            return processingEnv.getTypeUtils().erasure(type).toString();
+        }
+    }
+
+    /**
+     * Append the indentation of the given level.
+     *
+     * @param out   Code
+     * @param level Indentation level
+     * @return Code
+     */
+    private static StringBuilder indent(final StringBuilder out,
+                                        final int level) {
+        for (int i = 0; i < level; i++) {
+            out.append(INDENT);
+        }
+        return out;
+    }
+}
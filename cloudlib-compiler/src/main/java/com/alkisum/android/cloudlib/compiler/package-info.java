@@ -0,0 +1,4 @@
+/**
+ * Annotation processor package.
+ */
+package com.alkisum.android.cloudlib.compiler;
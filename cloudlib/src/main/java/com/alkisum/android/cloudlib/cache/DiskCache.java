@@ -0,0 +1,371 @@
+package com.alkisum.android.cloudlib.cache;
+
+import android.util.Log;
+
+import com.alkisum.android.cloudlib.utils.IoUtils;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Persistent disk cache storing downloaded files, keyed by remote path and
+ * ETag. The cache size is bounded, the least recently used files are evicted
+ * when the size exceeds the budget. The index is stored in the cache
+ * directory and always written to a temporary file first, the files that are
+ * not in the index when the cache is loaded (after a crash for example) are
+ * deleted.
+ *
+ * @author Alkisum
+ * @version 1.9
+ * @since 1.9
+ */
+public class DiskCache {
+
+    /**
+     * Log tag.
+     */
+    private static final String TAG = "DiskCache";
+
+    /**
+     * Name of the index file.
+     */
+    private static final String INDEX_FILE_NAME = "index.json";
+
+    /**
+     * Extension of the partial files, which are kept to resume downloads.
+     */
+    private static final String PART_EXT = ".part";
+
+    /**
+     * JSON key for the remote path.
+     */
+    private static final String KEY_PATH = "path";
+
+    /**
+     * JSON key for the file name.
+     */
+    private static final String KEY_NAME = "name";
+
+    /**
+     * JSON key for the ETag.
+     */
+    private static final String KEY_ETAG = "etag";
+
+    /**
+     * JSON key for the file size.
+     */
+    private static final String KEY_SIZE = "size";
+
+    /**
+     * Cache directory.
+     */
+    private final File directory;
+
+    /**
+     * Maximum size of the cached files in bytes.
+     */
+    private final long maxBytes;
+
+    /**
+     * Cache entries in access order, the keys are the remote paths.
+     */
+    private final LinkedHashMap<String, JSONObject> entries =
+            new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * Size of the cached files in bytes.
+     */
+    private long totalBytes;
+
+    /**
+     * Flag set to true when the index has been loaded.
+     */
+    private boolean loaded;
+
+    /**
+     * Flag set to true when the index has changed since it was saved.
+     */
+    private boolean dirty;
+
+    /**
+     * DiskCache constructor. The index is loaded on first use.
+     *
+     * @param directory Cache directory, dedicated to the cache
+     * @param maxBytes  Maximum size of the cached files in bytes
+     */
+    public DiskCache(final File directory, final long maxBytes) {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Get the location of the given remote file in the cache. The location
+     * does not depend on the ETag, a partial download can be resumed there.
+     * The index is loaded first, a file written there is then not deleted as
+     * an orphan when the index is loaded.
+     *
+     * @param remotePath Remote path
+     * @param fileName   File name, its extension is kept
+     * @return Location of the file in the cache
+     */
+    public final synchronized File getFile(final String remotePath,
+                                           final String fileName) {
+        load();
+        return locate(remotePath, fileName);
+    }
+
+    /**
+     * Get the location of the given remote file in the cache.
+     *
+     * @param remotePath Remote path
+     * @param fileName   File name, its extension is kept
+     * @return Location of the file in the cache
+     */
+    private File locate(final String remotePath, final String fileName) {
+        String extension = "";
+        int dot = fileName.lastIndexOf('.');
+        if (dot != -1) {
+            extension = fileName.substring(dot);
+        }
+        return new File(directory, hash(remotePath) + extension);
+    }
+
+    /**
+     * Get the cached copy of the given remote file and mark it as recently
+     * used.
+     *
+     * @param remotePath Remote path
+     * @param fileName   File name
+     * @param etag       Current ETag of the remote file
+     * @return Cached file, null if the file is not cached or if the cached copy
+     * has another ETag
+     */
+    public final synchronized File get(final String remotePath,
+                                       final String fileName,
+                                       final String etag) {
+        load();
+        JSONObject entry = entries.get(remotePath);
+        if (entry == null || etag == null || etag.isEmpty()
+                || !etag.equals(entry.optString(KEY_ETAG, null))) {
+            return null;
+        }
+        File file = locate(remotePath, fileName);
+        if (!file.exists()) {
+            remove(remotePath);
+            return null;
+        }
+        dirty = true;
+        return file;
+    }
+
+    /**
+     * Add the given remote file to the cache, the file must have been written
+     * to the location given by getFile(). The least recently used files are
+     * evicted if the cache exceeds its budget.
+     *
+     * @param remotePath Remote path
+     * @param fileName   File name
+     * @param etag       ETag of the remote file
+     */
+    public final synchronized void put(final String remotePath,
+                                       final String fileName,
+                                       final String etag) {
+        load();
+        File file = locate(remotePath, fileName);
+        JSONObject previous = entries.remove(remotePath);
+        if (previous != null) {
+            if (file.equals(locate(remotePath,
+                    previous.optString(KEY_NAME)))) {
+                // The previous copy has been overwritten by the new one
+                totalBytes -= previous.optLong(KEY_SIZE);
+            } else {
+                delete(remotePath, previous);
+            }
+        }
+        long size = file.length();
+        try {
+            JSONObject entry = new JSONObject();
+            entry.put(KEY_NAME, fileName);
+            entry.put(KEY_ETAG, etag);
+            entry.put(KEY_SIZE, size);
+            entries.put(remotePath, entry);
+            totalBytes += size;
+        } catch (JSONException e) {
+            Log.e(TAG, "Cannot add " + remotePath, e);
+        }
+        evict(remotePath);
+        dirty = true;
+    }
+
+    /**
+     * Save the index if it changed since it was last saved.
+     */
+    public final synchronized void flush() {
+        if (!dirty) {
+            return;
+        }
+        JSONArray index = new JSONArray();
+        try {
+            for (Map.Entry<String, JSONObject> entry : entries.entrySet()) {
+                JSONObject indexEntry = new JSONObject();
+                indexEntry.put(KEY_PATH, entry.getKey());
+                indexEntry.put(KEY_NAME, entry.getValue().optString(KEY_NAME));
+                indexEntry.put(KEY_ETAG, entry.getValue().opt(KEY_ETAG));
+                indexEntry.put(KEY_SIZE, entry.getValue().optLong(KEY_SIZE));
+                index.put(indexEntry);
+            }
+            IoUtils.writeText(new File(directory, INDEX_FILE_NAME),
+                    index.toString());
+            dirty = false;
+        } catch (IOException | JSONException e) {
+            Log.e(TAG, "Cannot save cache index", e);
+        }
+    }
+
+    /**
+     * Remove all the files from the cache.
+     */
+    public final synchronized void clear() {
+        load();
+        for (String remotePath : new HashSet<>(entries.keySet())) {
+            remove(remotePath);
+        }
+        dirty = true;
+        flush();
+    }
+
+    /**
+     * @return Size of the cached files in bytes
+     */
+    public final synchronized long size() {
+        load();
+        return totalBytes;
+    }
+
+    /**
+     * Load the index if not loaded yet, and delete the files that are not in
+     * the index.
+     */
+    private void load() {
+        if (loaded) {
+            return;
+        }
+        loaded = true;
+        if (!directory.exists() && !directory.mkdirs()) {
+            Log.e(TAG, "Cannot create " + directory);
+            return;
+        }
+        File indexFile = new File(directory, INDEX_FILE_NAME);
+        if (indexFile.exists()) {
+            try {
+                JSONArray index = new JSONArray(IoUtils.readText(indexFile));
+                for (int i = 0; i < index.length(); i++) {
+                    JSONObject indexEntry = index.getJSONObject(i);
+                    String remotePath = indexEntry.getString(KEY_PATH);
+                    String fileName = indexEntry.optString(KEY_NAME);
+                    File file = locate(remotePath, fileName);
+                    if (file.exists()) {
+                        JSONObject entry = new JSONObject();
+                        entry.put(KEY_NAME, fileName);
+                        entry.put(KEY_ETAG, indexEntry.opt(KEY_ETAG));
+                        entry.put(KEY_SIZE, file.length());
+                        entries.put(remotePath, entry);
+                        totalBytes += file.length();
+                    }
+                }
+            } catch (IOException | JSONException e) {
+                Log.e(TAG, "Cannot read cache index, clearing cache", e);
+                entries.clear();
+                totalBytes = 0;
+            }
+        }
+        deleteOrphanFiles();
+    }
+
+    /**
+     * Delete the files of the cache directory that are not in the index,
+     * except the partial files.
+     */
+    private void deleteOrphanFiles() {
+        Set<String> fileNames = new HashSet<>();
+        fileNames.add(INDEX_FILE_NAME);
+        for (Map.Entry<String, JSONObject> entry : entries.entrySet()) {
+            fileNames.add(locate(entry.getKey(),
+                    entry.getValue().optString(KEY_NAME)).getName());
+        }
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            if (!fileNames.contains(file.getName())
+                    && !file.getName().endsWith(PART_EXT)
+                    && !file.delete()) {
+                Log.w(TAG, "Cannot delete " + file);
+            }
+        }
+    }
+
+    /**
+     * Evict the least recently used files until the cache fits in its budget.
+     *
+     * @param keptPath Remote path of the file that must not be evicted
+     */
+    private void evict(final String keptPath) {
+        // Getting a value would reorder the entries during the iteration
+        Iterator<Map.Entry<String, JSONObject>> it =
+                entries.entrySet().iterator();
+        while (totalBytes > maxBytes && it.hasNext()) {
+            Map.Entry<String, JSONObject> entry = it.next();
+            if (!entry.getKey().equals(keptPath)) {
+                it.remove();
+                delete(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    /**
+     * Remove the given remote file from the cache.
+     *
+     * @param remotePath Remote path
+     */
+    private void remove(final String remotePath) {
+        JSONObject entry = entries.remove(remotePath);
+        if (entry != null) {
+            delete(remotePath, entry);
+        }
+    }
+
+    /**
+     * Delete the cached file of the given entry.
+     *
+     * @param remotePath Remote path
+     * @param entry      Cache entry
+     */
+    private void delete(final String remotePath, final JSONObject entry) {
+        totalBytes -= entry.optLong(KEY_SIZE);
+        File file = locate(remotePath, entry.optString(KEY_NAME));
+        if (file.exists() && !file.delete()) {
+            Log.w(TAG, "Cannot delete " + file);
+        }
+    }
+
+    /**
+     * Hash the given remote path to get a file name.
+     *
+     * @param remotePath Remote path
+     * @return Hash as an hexadecimal string
+     */
+    private static String hash(final String remotePath) {
+        return IoUtils.sha1(remotePath.getBytes(IoUtils.UTF_8));
+    }
+}
@@ -0,0 +1,152 @@
+package com.alkisum.android.cloudlib.cache;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded in-memory cache of parsed JSON objects, keyed by the hash of the
+ * raw bytes. Identical content, read again during a later synchronisation or
+ * stored in several files, is then parsed only once. The least recently used
+ * entries are evicted first.
+ * The cache keeps its own copy of each JSON object and gives a new copy on
+ * each hit: a change made through one file is never seen through the others.
+ * Copying the objects is much cheaper than parsing the content again.
+ *
+ * @author Alkisum
+ * @version 1.9
+ * @since 1.9
+ */
+public class JsonParseCache {
+
+    /**
+     * Parsed JSON objects, the keys are the content hashes, in access order.
+     */
+    private final Map<String, JSONObject> entries;
+
+    /**
+     * JsonParseCache constructor.
+     *
+     * @param maxEntries Maximum number of JSON objects kept in the cache
+     */
+    public JsonParseCache(final int maxEntries) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException(
+                    "At least one entry must be cached");
+        }
+        this.entries = new LinkedHashMap<String, JSONObject>(
+                16, 0.75f, true) {
+
+            @Override
+            protected boolean removeEldestEntry(
+                    final Map.Entry<String, JSONObject> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Get the JSON object parsed from content having the given hash.
+     *
+     * @param key Content hash
+     * @return Copy of the JSON object, owned by the caller, null if not
+     * cached
+     */
+    public final JSONObject get(final String key) {
+        JSONObject jsonObject;
+        synchronized (this) {
+            jsonObject = entries.get(key);
+        }
+        if (jsonObject == null) {
+            return null;
+        }
+        return copy(jsonObject);
+    }
+
+    /**
+     * Store a copy of the JSON object parsed from content having the given
+     * hash. The given object can be modified afterwards.
+     *
+     * @param key        Content hash
+     * @param jsonObject Parsed JSON object
+     */
+    public final void put(final String key, final JSONObject jsonObject) {
+        if (jsonObject == null) {
+            return;
+        }
+        JSONObject copy = copy(jsonObject);
+        synchronized (this) {
+            entries.put(key, copy);
+        }
+    }
+
+    /**
+     * Remove all the entries.
+     */
+    public final synchronized void clear() {
+        entries.clear();
+    }
+
+    /**
+     * @return Number of JSON objects in the cache
+     */
+    public final synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Copy the given JSON object and the JSON objects and arrays it contains.
+     * The other values are immutable and shared.
+     *
+     * @param jsonObject JSON object to copy
+     * @return Copy of the JSON object
+     */
+    private static JSONObject copy(final JSONObject jsonObject) {
+        JSONObject copy = new JSONObject();
+        Iterator<String> keys = jsonObject.keys();
+        try {
+            while (keys.hasNext()) {
+                String key = keys.next();
+                copy.put(key, copyValue(jsonObject.opt(key)));
+            }
+        } catch (JSONException e) {
+            // The values come from a valid JSON object, this cannot happen
+            throw new IllegalStateException(e);
+        }
+        return copy;
+    }
+
+    /**
+     * Copy the given JSON array and the JSON objects and arrays it contains.
+     *
+     * @param jsonArray JSON array to copy
+     * @return Copy of the JSON array
+     */
+    private static JSONArray copy(final JSONArray jsonArray) {
+        JSONArray copy = new JSONArray();
+        for (int i = 0; i < jsonArray.length(); i++) {
+            copy.put(copyValue(jsonArray.opt(i)));
+        }
+        return copy;
+    }
+
+    /**
+     * Copy the given value if it is a JSON object or array.
+     *
+     * @param value Value to copy
+     * @return Copy of the JSON object or array, the value itself otherwise
+     */
+    private static Object copyValue(final Object value) {
+        if (value instanceof JSONObject) {
+            return copy((JSONObject) value);
+        }
+        if (value instanceof JSONArray) {
+            return copy((JSONArray) value);
+        }
+        return value;
+    }
+}
@@ -0,0 +1,532 @@
+package com.alkisum.android.cloudlib.cache;
+
+import android.util.Log;
+
+import com.alkisum.android.cloudlib.utils.IoUtils;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Persistent cache storing the content already parsed by the file readers,
+ * the TXT content and the JSON objects, in a compact binary format. An entry
+ * is keyed by the path, the size and the modification time of the file, it
+ * is ignored as soon as the file changes. The snapshot is loaded with a
+ * single sequential read on first access, the readers then only parse the
+ * files that are new or changed. The JSON objects are rebuilt from their
+ * binary form, without tokenizing any JSON text.
+ *
+ * @author Alkisum
+ * @version 1.9
+ * @since 1.9
+ */
+public class SnapshotCache {
+
+    /**
+     * Log tag.
+     */
+    private static final String TAG = "SnapshotCache";
+
+    /**
+     * Magic number starting the snapshot file.
+     */
+    private static final int MAGIC = 0x434c5350;
+
+    /**
+     * Version of the snapshot format, the snapshots written with another
+     * version are ignored.
+     */
+    private static final int FORMAT_VERSION = 1;
+
+    /**
+     * Entry holding TXT content.
+     */
+    private static final byte ENTRY_TXT = 1;
+
+    /**
+     * Entry holding a JSON object.
+     */
+    private static final byte ENTRY_JSON = 2;
+
+    /**
+     * Null value.
+     */
+    private static final byte VALUE_NULL = 0;
+
+    /**
+     * Boolean value.
+     */
+    private static final byte VALUE_BOOLEAN = 1;
+
+    /**
+     * Integer value.
+     */
+    private static final byte VALUE_INT = 2;
+
+    /**
+     * Long value.
+     */
+    private static final byte VALUE_LONG = 3;
+
+    /**
+     * Double value.
+     */
+    private static final byte VALUE_DOUBLE = 4;
+
+    /**
+     * String value.
+     */
+    private static final byte VALUE_STRING = 5;
+
+    /**
+     * JSON object value.
+     */
+    private static final byte VALUE_OBJECT = 6;
+
+    /**
+     * JSON array value.
+     */
+    private static final byte VALUE_ARRAY = 7;
+
+    /**
+     * Minimum size in bytes of an entry: the path length, the file size, the
+     * modification time, the type and the payload length.
+     */
+    private static final int MIN_ENTRY_SIZE = 4 + 8 + 8 + 1 + 4;
+
+    /**
+     * File storing the snapshot.
+     */
+    private final File file;
+
+    /**
+     * Entries of the snapshot, the keys are the absolute paths of the files.
+     */
+    private final Map<String, Entry> entries = new HashMap<>();
+
+    /**
+     * Flag set to true when the snapshot has been loaded.
+     */
+    private boolean loaded;
+
+    /**
+     * Flag set to true when the entries changed since the snapshot was
+     * loaded or saved.
+     */
+    private boolean dirty;
+
+    /**
+     * SnapshotCache constructor.
+     *
+     * @param file File storing the snapshot
+     */
+    public SnapshotCache(final File file) {
+        this.file = file;
+    }
+
+    /**
+     * Get the TXT content stored for the given file.
+     *
+     * @param source File whose content is requested
+     * @return TXT content, null if the snapshot does not hold the current
+     * content of the file
+     */
+    public final synchronized String getText(final File source) {
+        Entry entry = getEntry(source, ENTRY_TXT);
+        if (entry == null) {
+            return null;
+        }
+        return new String(entry.payload, IoUtils.UTF_8);
+    }
+
+    /**
+     * Store the TXT content of the given file.
+     *
+     * @param source  File whose content has been read
+     * @param content TXT content
+     */
+    public final synchronized void putText(final File source,
+                                           final String content) {
+        putEntry(source, ENTRY_TXT, content.getBytes(IoUtils.UTF_8));
+    }
+
+    /**
+     * Get the JSON object stored for the given file. A new JSON object is
+     * built on each call, it can be modified freely.
+     *
+     * @param source File whose JSON object is requested
+     * @return JSON object, null if the snapshot does not hold the current
+     * content of the file
+     */
+    public final synchronized JSONObject getJsonObject(final File source) {
+        Entry entry = getEntry(source, ENTRY_JSON);
+        if (entry == null) {
+            return null;
+        }
+        try {
+            return (JSONObject) readValue(new DataInputStream(
+                    new ByteArrayInputStream(entry.payload)));
+        } catch (IOException | ClassCastException e) {
+            Log.w(TAG, "Invalid snapshot entry for " + source, e);
+            entries.remove(source.getAbsolutePath());
+            dirty = true;
+            return null;
+        }
+    }
+
+    /**
+     * Store the JSON object parsed from the given file. The JSON object is
+     * encoded right away, its later changes are not stored.
+     *
+     * @param source     File whose JSON object has been parsed
+     * @param jsonObject JSON object
+     */
+    public final synchronized void putJsonObject(final File source,
+                                                 final JSONObject jsonObject) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try {
+            writeValue(new DataOutputStream(bytes), jsonObject);
+        } catch (IOException e) {
+            // Cannot happen when writing into memory
+            Log.w(TAG, "Cannot encode " + source, e);
+            return;
+        }
+        putEntry(source, ENTRY_JSON, bytes.toByteArray());
+    }
+
+    /**
+     * Save the snapshot if it changed. The entries of the files that do not
+     * exist anymore or that changed are dropped. The snapshot is written to
+     * a temporary file first.
+     *
+     * @throws IOException An error occurred while writing the snapshot
+     */
+    public final synchronized void save() throws IOException {
+        load();
+        Iterator<Map.Entry<String, Entry>> iterator =
+                entries.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, Entry> e = iterator.next();
+            if (!e.getValue().matches(new File(e.getKey()))) {
+                iterator.remove();
+                dirty = true;
+            }
+        }
+        if (!dirty) {
+            return;
+        }
+        File parent = file.getParentFile();
+        if (parent != null && !parent.exists() && !parent.mkdirs()) {
+            throw new IOException("Cannot create " + parent);
+        }
+        IoUtils.write(file, stream -> {
+            DataOutputStream out = new DataOutputStream(stream);
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeInt(entries.size());
+            for (Map.Entry<String, Entry> e : entries.entrySet()) {
+                Entry entry = e.getValue();
+                writeString(out, e.getKey());
+                out.writeLong(entry.size);
+                out.writeLong(entry.modified);
+                out.writeByte(entry.type);
+                out.writeInt(entry.payload.length);
+                out.write(entry.payload);
+            }
+            out.flush();
+        });
+        dirty = false;
+    }
+
+    /**
+     * Remove all the entries and delete the snapshot file.
+     */
+    public final synchronized void clear() {
+        entries.clear();
+        loaded = true;
+        dirty = false;
+        if (file.exists() && !file.delete()) {
+            Log.w(TAG, "Cannot delete " + file);
+        }
+    }
+
+    /**
+     * Load the snapshot if it has not been loaded yet. A missing, outdated or
+     * corrupted snapshot gives an empty cache.
+     */
+    private void load() {
+        if (loaded) {
+            return;
+        }
+        loaded = true;
+        if (!file.exists()) {
+            return;
+        }
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+                Log.w(TAG, "Ignoring snapshot written in another format");
+                dirty = true;
+                return;
+            }
+            // The counts and lengths are checked against the file size, a
+            // corrupted value cannot allocate more than the file holds
+            long fileSize = file.length();
+            int count = in.readInt();
+            if (count < 0 || count > fileSize / MIN_ENTRY_SIZE) {
+                throw new IOException("Invalid entry count " + count);
+            }
+            for (int i = 0; i < count; i++) {
+                String path = readString(in, fileSize);
+                long size = in.readLong();
+                long modified = in.readLong();
+                byte type = in.readByte();
+                byte[] payload = new byte[readLength(in, fileSize)];
+                in.readFully(payload);
+                entries.put(path, new Entry(size, modified, type, payload));
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "Cannot read snapshot", e);
+            entries.clear();
+            dirty = true;
+        }
+    }
+
+    /**
+     * Get the entry of the given file, if it holds the current content.
+     *
+     * @param source File whose entry is requested
+     * @param type   Type of the entry
+     * @return Entry, null if there is no valid entry for the file
+     */
+    private Entry getEntry(final File source, final byte type) {
+        load();
+        Entry entry = entries.get(source.getAbsolutePath());
+        if (entry == null || entry.type != type || !entry.matches(source)) {
+            return null;
+        }
+        return entry;
+    }
+
+    /**
+     * Store an entry for the given file.
+     *
+     * @param source  File whose content is stored
+     * @param type    Type of the entry
+     * @param payload Encoded content
+     */
+    private void putEntry(final File source, final byte type,
+                          final byte[] payload) {
+        load();
+        entries.put(source.getAbsolutePath(), new Entry(source.length(),
+                source.lastModified(), type, payload));
+        dirty = true;
+    }
+
+    /**
+     * Write a JSON value.
+     *
+     * @param out   Output stream
+     * @param value JSON value
+     * @throws IOException An error occurred while writing the value
+     */
+    private static void writeValue(final DataOutputStream out,
+                                   final Object value) throws IOException {
+        if (value == null || value == JSONObject.NULL) {
+            out.writeByte(VALUE_NULL);
+        } else if (value instanceof Boolean) {
+            out.writeByte(VALUE_BOOLEAN);
+            out.writeBoolean((Boolean) value);
+        } else if (value instanceof Integer) {
+            out.writeByte(VALUE_INT);
+            out.writeInt((Integer) value);
+        } else if (value instanceof Long) {
+            out.writeByte(VALUE_LONG);
+            out.writeLong((Long) value);
+        } else if (value instanceof Number) {
+            out.writeByte(VALUE_DOUBLE);
+            out.writeDouble(((Number) value).doubleValue());
+        } else if (value instanceof JSONObject) {
+            JSONObject object = (JSONObject) value;
+            out.writeByte(VALUE_OBJECT);
+            out.writeInt(object.length());
+            Iterator<String> keys = object.keys();
+            while (keys.hasNext()) {
+                String key = keys.next();
+                writeString(out, key);
+                writeValue(out, object.opt(key));
+            }
+        } else if (value instanceof JSONArray) {
+            JSONArray array = (JSONArray) value;
+            out.writeByte(VALUE_ARRAY);
+            out.writeInt(array.length());
+            for (int i = 0; i < array.length(); i++) {
+                writeValue(out, array.opt(i));
+            }
+        } else {
+            out.writeByte(VALUE_STRING);
+            writeString(out, value.toString());
+        }
+    }
+
+    /**
+     * Read a JSON value.
+     *
+     * @param in Input stream
+     * @return JSON value
+     * @throws IOException An error occurred while reading the value
+     */
+    private static Object readValue(final DataInputStream in)
+            throws IOException {
+        byte type = in.readByte();
+        switch (type) {
+            case VALUE_NULL:
+                return JSONObject.NULL;
+            case VALUE_BOOLEAN:
+                return in.readBoolean();
+            case VALUE_INT:
+                return in.readInt();
+            case VALUE_LONG:
+                return in.readLong();
+            case VALUE_DOUBLE:
+                return in.readDouble();
+            case VALUE_STRING:
+                return readString(in, in.available());
+            case VALUE_OBJECT:
+                JSONObject object = new JSONObject();
+                int size = in.readInt();
+                try {
+                    for (int i = 0; i < size; i++) {
+                        object.put(readString(in, in.available()),
+                                readValue(in));
+                    }
+                } catch (JSONException e) {
+                    throw new IOException("Invalid JSON object", e);
+                }
+                return object;
+            case VALUE_ARRAY:
+                JSONArray array = new JSONArray();
+                int length = in.readInt();
+                for (int i = 0; i < length; i++) {
+                    array.put(readValue(in));
+                }
+                return array;
+            default:
+                throw new IOException("Unknown value type " + type);
+        }
+    }
+
+    /**
+     * Write a string, without the length limit of writeUTF.
+     *
+     * @param out    Output stream
+     * @param string String to write
+     * @throws IOException An error occurred while writing the string
+     */
+    private static void writeString(final DataOutputStream out,
+                                    final String string) throws IOException {
+        byte[] bytes = string.getBytes(IoUtils.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Read a string written by writeString.
+     *
+     * @param in        Input stream
+     * @param maxLength Maximum length in bytes of a valid string
+     * @return String
+     * @throws IOException An error occurred while reading the string
+     */
+    private static String readString(final DataInputStream in,
+                                     final long maxLength)
+            throws IOException {
+        byte[] bytes = new byte[readLength(in, maxLength)];
+        in.readFully(bytes);
+        return new String(bytes, IoUtils.UTF_8);
+    }
+
+    /**
+     * Read the length of a string or a payload.
+     *
+     * @param in        Input stream
+     * @param maxLength Maximum valid length in bytes
+     * @return Length in bytes
+     * @throws IOException The length is negative or exceeds the maximum
+     *                     length
+     */
+    private static int readLength(final DataInputStream in,
+                                  final long maxLength) throws IOException {
+        int length = in.readInt();
+        if (length < 0 || length > maxLength) {
+            throw new IOException("Invalid length " + length);
+        }
+        return length;
+    }
+
+    /**
+     * Entry of the snapshot.
+     */
+    private static final class Entry {
+
+        /**
+         * Size of the file when its content was stored.
+         */
+        private final long size;
+
+        /**
+         * Modification time of the file when its content was stored.
+         */
+        private final long modified;
+
+        /**
+         * Type of the entry.
+         */
+        private final byte type;
+
+        /**
+         * Encoded content.
+         */
+        private final byte[] payload;
+
+        /**
+         * Entry constructor.
+         *
+         * @param size     Size of the file when its content was stored
+         * @param modified Modification time of the file when its content was
+         *                 stored
+         * @param type     Type of the entry
+         * @param payload  Encoded content
+         */
+        private Entry(final long size, final long modified, final byte type,
+                      final byte[] payload) {
+            this.size = size;
+            this.modified = modified;
+            this.type = type;
+            this.payload = payload;
+        }
+
+        /**
+         * @param source File to compare with
+         * @return true if the file did not change since its content was
+         * stored
+         */
+        private boolean matches(final File source) {
+            return source.exists() && source.length() == size
+                    && source.lastModified() == modified;
+        }
+    }
+}
@@ -0,0 +1,4 @@
+/**
+ * Cache package.
+ */
+package com.alkisum.android.cloudlib.cache;
@@ -8,7 +8,7 @@ import java.util.List;
  * Class defining download event for EventBus.
  *
  * @author Alkisum
- * @version 1.3
+ * @version 1.9
  * @since 1.2
  */
 public class DownloadEvent extends FilteredEvent {
@@ -29,10 +29,16 @@ public class DownloadEvent extends FilteredEvent {
     public static final int NO_FILE = 2;
 
     /**
-     * Files are being downloaded.
+     * A file has been downloaded, the file is given by getFile().
      */
     public static final int DOWNLOADING = 3;
 
+    /**
+     * Remote files listed, the files that are going to be downloaded are
+     * given by getFiles().
+     */
+    public static final int LISTED = 4;
+
     /**
      * Download operation result.
      */
@@ -44,10 +50,34 @@ public class DownloadEvent extends FilteredEvent {
     private String message;
 
     /**
-     * Files downloaded.
+     * Files downloaded, or files to download for a LISTED event.
      */
     private List<CloudFile> files;
 
+    /**
+     * File concerned by the event, null if the event does not concern a
+     * single file.
+     */
+    private CloudFile file;
+
+    /**
+     * Files downloaded for the first time, null if the incremental mode is
+     * disabled.
+     */
+    private List<CloudFile> addedFiles;
+
+    /**
+     * Files downloaded again because they changed since the previous
+     * download, null if the incremental mode is disabled.
+     */
+    private List<CloudFile> changedFiles;
+
+    /**
+     * Remote paths of the files removed since the previous download, null if
+     * the incremental mode is disabled.
+     */
+    private List<String> removedPaths;
+
     /**
      * DownloadEvent constructor.
      *
@@ -87,6 +117,43 @@ public class DownloadEvent extends FilteredEvent {
         this.files = files;
     }
 
+    /**
+     * DownloadEvent constructor.
+     *
+     * @param result        Download operation result
+     * @param file          File concerned by the event
+     * @param subscriberIds Subscriber ids allowed to process the event
+     */
+    public DownloadEvent(final Integer[] subscriberIds, final int result,
+                         final CloudFile file) {
+        super(subscriberIds);
+        this.result = result;
+        this.file = file;
+    }
+
+    /**
+     * DownloadEvent constructor.
+     *
+     * @param result        Download operation result
+     * @param files         Files downloaded
+     * @param addedFiles    Files downloaded for the first time
+     * @param changedFiles  Files downloaded again because they changed
+     * @param removedPaths  Remote paths of the files removed
+     * @param subscriberIds Subscriber ids allowed to process the event
+     */
+    public DownloadEvent(final Integer[] subscriberIds, final int result,
+                         final List<CloudFile> files,
+                         final List<CloudFile> addedFiles,
+                         final List<CloudFile> changedFiles,
+                         final List<String> removedPaths) {
+        super(subscriberIds);
+        this.result = result;
+        this.files = files;
+        this.addedFiles = addedFiles;
+        this.changedFiles = changedFiles;
+        this.removedPaths = removedPaths;
+    }
+
     /**
      * @return Download operation result
      */
@@ -102,9 +169,41 @@ public class DownloadEvent extends FilteredEvent {
     }
 
     /**
-     * @return Files downloaded
+     * @return Files downloaded, or files to download for a LISTED event
      */
     public final List<CloudFile> getFiles() {
         return files;
     }
+
+    /**
+     * @return File concerned by the event, null if the event does not concern
+     * a single file
+     */
+    public final CloudFile getFile() {
+        return file;
+    }
+
+    /**
+     * @return Files downloaded for the first time, null if the incremental
+     * mode is disabled
+     */
+    public final List<CloudFile> getAddedFiles() {
+        return addedFiles;
+    }
+
+    /**
+     * @return Files downloaded again because they changed since the previous
+     * download, null if the incremental mode is disabled
+     */
+    public final List<CloudFile> getChangedFiles() {
+        return changedFiles;
+    }
+
+    /**
+     * @return Remote paths of the files removed since the previous download,
+     * null if the incremental mode is disabled
+     */
+    public final List<String> getRemovedPaths() {
+        return removedPaths;
+    }
 }
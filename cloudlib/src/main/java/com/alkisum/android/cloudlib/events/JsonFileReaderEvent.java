@@ -1,14 +1,17 @@
 package com.alkisum.android.cloudlib.events;
 
+import com.alkisum.android.cloudlib.file.CloudFile;
 import com.alkisum.android.cloudlib.file.json.JsonFile;
 
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Class defining JsonFileReader event for EventBus.
  *
  * @author Alkisum
- * @version 1.3
+ * @version 1.9
  * @since 1.2
  */
 public class JsonFileReaderEvent extends FilteredEvent {
@@ -23,6 +26,11 @@ public class JsonFileReaderEvent extends FilteredEvent {
      */
     public static final int ERROR = 1;
 
+    /**
+     * Some JSON files could not be read, the other files have been read.
+     */
+    public static final int PARTIAL = 2;
+
     /**
      * JSON file reader result.
      */
@@ -39,6 +47,12 @@ public class JsonFileReaderEvent extends FilteredEvent {
      */
     private Exception exception;
 
+    /**
+     * Files that could not be read with the exception thrown for each of
+     * them, empty if all the files have been read.
+     */
+    private Map<CloudFile, Exception> failures = Collections.emptyMap();
+
     /**
      * JsonFileReaderEvent constructor.
      *
@@ -67,6 +81,38 @@ public class JsonFileReaderEvent extends FilteredEvent {
         this.exception = exception;
     }
 
+    /**
+     * JsonFileReaderEvent constructor.
+     *
+     * @param result        JSON file reader result
+     * @param jsonFiles     JSON files read
+     * @param failures      Files that could not be read with the exception
+     *                      thrown for each of them
+     * @param subscriberIds Subscriber ids allowed to process the event
+     */
+    public JsonFileReaderEvent(final Integer[] subscriberIds, final int result,
+                               final List<JsonFile> jsonFiles,
+                               final Map<CloudFile, Exception> failures) {
+        this(subscriberIds, result, jsonFiles);
+        this.failures = failures;
+    }
+
+    /**
+     * JsonFileReaderEvent constructor.
+     *
+     * @param result        JSON file reader result
+     * @param exception     First exception thrown while reading JSON files
+     * @param failures      Files that could not be read with the exception
+     *                      thrown for each of them
+     * @param subscriberIds Subscriber ids allowed to process the event
+     */
+    public JsonFileReaderEvent(final Integer[] subscriberIds, final int result,
+                               final Exception exception,
+                               final Map<CloudFile, Exception> failures) {
+        this(subscriberIds, result, exception);
+        this.failures = failures;
+    }
+
     /**
      * @return JSON file reader result
      */
@@ -88,4 +134,12 @@ public class JsonFileReaderEvent extends FilteredEvent {
     public Exception getException() {
         return exception;
     }
+
+    /**
+     * @return Files that could not be read with the exception thrown for
+     * each of them, empty if all the files have been read
+     */
+    public Map<CloudFile, Exception> getFailures() {
+        return failures;
+    }
 }
@@ -2,13 +2,15 @@ package com.alkisum.android.cloudlib.events;
 
 import com.alkisum.android.cloudlib.file.CloudFile;
 
+import java.util.Collections;
+import java.util.Map;
 import java.util.Queue;
 
 /**
  * Class defining JsonFileWriter event for EventBus.
  *
  * @author Alkisum
- * @version 1.3
+ * @version 1.9
  * @since 1.2
  */
 public class JsonFileWriterEvent extends FilteredEvent {
@@ -23,6 +25,11 @@ public class JsonFileWriterEvent extends FilteredEvent {
      */
     public static final int ERROR = 1;
 
+    /**
+     * Some JSON files could not be written, the other files have been written.
+     */
+    public static final int PARTIAL = 2;
+
     /**
      * JSON file writer result.
      */
@@ -39,6 +46,12 @@ public class JsonFileWriterEvent extends FilteredEvent {
      */
     private Exception exception;
 
+    /**
+     * Files that could not be written with the exception thrown for each of
+     * them, empty if all the files have been written.
+     */
+    private Map<CloudFile, Exception> failures = Collections.emptyMap();
+
     /**
      * JsonFileWriterEvent constructor.
      *
@@ -67,6 +80,38 @@ public class JsonFileWriterEvent extends FilteredEvent {
         this.exception = exception;
     }
 
+    /**
+     * JsonFileWriterEvent constructor.
+     *
+     * @param result        JSON file writer result
+     * @param cloudFiles    JSON files written
+     * @param failures      Files that could not be written with the exception
+     *                      thrown for each of them
+     * @param subscriberIds Subscriber ids allowed to process the event
+     */
+    public JsonFileWriterEvent(final Integer[] subscriberIds, final int result,
+                               final Queue<CloudFile> cloudFiles,
+                               final Map<CloudFile, Exception> failures) {
+        this(subscriberIds, result, cloudFiles);
+        this.failures = failures;
+    }
+
+    /**
+     * JsonFileWriterEvent constructor.
+     *
+     * @param result        JSON file writer result
+     * @param exception     First exception thrown while writing JSON files
+     * @param failures      Files that could not be written with the exception
+     *                      thrown for each of them
+     * @param subscriberIds Subscriber ids allowed to process the event
+     */
+    public JsonFileWriterEvent(final Integer[] subscriberIds, final int result,
+                               final Exception exception,
+                               final Map<CloudFile, Exception> failures) {
+        this(subscriberIds, result, exception);
+        this.failures = failures;
+    }
+
     /**
      * @return JSON file writer result
      */
@@ -88,4 +133,12 @@ public class JsonFileWriterEvent extends FilteredEvent {
     public Exception getException() {
         return exception;
     }
+
+    /**
+     * @return Files that could not be written with the exception thrown for
+     * each of them, empty if all the files have been written
+     */
+    public Map<CloudFile, Exception> getFailures() {
+        return failures;
+    }
 }
@@ -2,13 +2,15 @@ package com.alkisum.android.cloudlib.events;
 
 import com.alkisum.android.cloudlib.file.CloudFile;
 
+import java.util.Collections;
+import java.util.Map;
 import java.util.Queue;
 
 /**
  * Class defining TxtFileWriter event for EventBus.
  *
  * @author Alkisum
- * @version 1.3
+ * @version 1.9
  * @since 1.3
  */
 public class TxtFileWriterEvent extends FilteredEvent {
@@ -23,6 +25,11 @@ public class TxtFileWriterEvent extends FilteredEvent {
      */
     public static final int ERROR = 1;
 
+    /**
+     * Some TXT files could not be written, the other files have been written.
+     */
+    public static final int PARTIAL = 2;
+
     /**
      * TXT file writer result.
      */
@@ -39,6 +46,12 @@ public class TxtFileWriterEvent extends FilteredEvent {
      */
     private Exception exception;
 
+    /**
+     * Files that could not be written with the exception thrown for each of
+     * them, empty if all the files have been written.
+     */
+    private Map<CloudFile, Exception> failures = Collections.emptyMap();
+
     /**
      * TxtFileWriterEvent constructor.
      *
@@ -67,6 +80,38 @@ public class TxtFileWriterEvent extends FilteredEvent {
         this.exception = exception;
     }
 
+    /**
+     * TxtFileWriterEvent constructor.
+     *
+     * @param result        TXT file writer result
+     * @param cloudFiles    TXT files written
+     * @param failures      Files that could not be written with the exception
+     *                      thrown for each of them
+     * @param subscriberIds Subscriber ids allowed to process the event
+     */
+    public TxtFileWriterEvent(final Integer[] subscriberIds, final int result,
+                              final Queue<CloudFile> cloudFiles,
+                              final Map<CloudFile, Exception> failures) {
+        this(subscriberIds, result, cloudFiles);
+        this.failures = failures;
+    }
+
+    /**
+     * TxtFileWriterEvent constructor.
+     *
+     * @param result        TXT file writer result
+     * @param exception     First exception thrown while writing TXT files
+     * @param failures      Files that could not be written with the exception
+     *                      thrown for each of them
+     * @param subscriberIds Subscriber ids allowed to process the event
+     */
+    public TxtFileWriterEvent(final Integer[] subscriberIds, final int result,
+                              final Exception exception,
+                              final Map<CloudFile, Exception> failures) {
+        this(subscriberIds, result, exception);
+        this.failures = failures;
+    }
+
     /**
      * @return TXT file writer result
      */
@@ -88,4 +133,12 @@ public class TxtFileWriterEvent extends FilteredEvent {
     public Exception getException() {
         return exception;
     }
+
+    /**
+     * @return Files that could not be written with the exception thrown for
+     * each of them, empty if all the files have been written
+     */
+    public Map<CloudFile, Exception> getFailures() {
+        return failures;
+    }
 }
@@ -1,10 +1,12 @@
 package com.alkisum.android.cloudlib.events;
 
+import com.alkisum.android.cloudlib.file.CloudFile;
+
 /**
  * Class defining upload event for EventBus.
  *
  * @author Alkisum
- * @version 1.3
+ * @version 1.9
  * @since 1.2
  */
 public class UploadEvent extends FilteredEvent {
@@ -24,6 +26,11 @@ public class UploadEvent extends FilteredEvent {
      */
     public static final int UPLOADING = 2;
 
+    /**
+     * File not uploaded because its remote copy is identical.
+     */
+    public static final int SKIPPED = 3;
+
     /**
      * Upload operation result.
      */
@@ -34,6 +41,12 @@ public class UploadEvent extends FilteredEvent {
      */
     private String message;
 
+    /**
+     * File concerned by the event, null if the event does not concern a
+     * single file.
+     */
+    private CloudFile file;
+
     /**
      * UploadEvent constructor.
      *
@@ -59,6 +72,20 @@ public class UploadEvent extends FilteredEvent {
         this.message = message;
     }
 
+    /**
+     * UploadEvent constructor.
+     *
+     * @param result        Upload operation result
+     * @param file          File concerned by the event
+     * @param subscriberIds Subscriber ids allowed to process the event
+     */
+    public UploadEvent(final Integer[] subscriberIds, final int result,
+                       final CloudFile file) {
+        super(subscriberIds);
+        this.result = result;
+        this.file = file;
+    }
+
     /**
      * @return Upload operation result
      */
@@ -72,4 +99,12 @@ public class UploadEvent extends FilteredEvent {
     public final String getMessage() {
         return message;
     }
+
+    /**
+     * @return File concerned by the event, null if the event does not concern
+     * a single file
+     */
+    public final CloudFile getFile() {
+        return file;
+    }
 }
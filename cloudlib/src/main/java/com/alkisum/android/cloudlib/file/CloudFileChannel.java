@@ -0,0 +1,170 @@
+package com.alkisum.android.cloudlib.file;
+
+import java.io.IOException;
+import java.util.LinkedList;
+import java.util.Queue;
+
+/**
+ * Bounded channel passing the files from a producer, such as a file writer,
+ * to a consumer, such as the uploader, while the producer is still running.
+ * The producer blocks when the channel is full, which limits the number of
+ * files waiting to be consumed. The producer closes the channel once all the
+ * files have been put, or fails it if it cannot produce all the files. The
+ * consumer fails the channel to stop the producer.
+ *
+ * @author Alkisum
+ * @version 1.9
+ * @since 1.9
+ */
+public class CloudFileChannel {
+
+    /**
+     * Maximum number of files waiting to be consumed.
+     */
+    private final int capacity;
+
+    /**
+     * Files waiting to be consumed.
+     */
+    private final Queue<CloudFile> files = new LinkedList<>();
+
+    /**
+     * Flag set to true when no more file will be put.
+     */
+    private boolean closed;
+
+    /**
+     * Exception that stopped the channel, null if the channel has not failed.
+     */
+    private Exception failure;
+
+    /**
+     * Listener notified when a file is put or when the channel is closed or
+     * fails.
+     */
+    private volatile Runnable listener;
+
+    /**
+     * CloudFileChannel constructor.
+     *
+     * @param capacity Maximum number of files waiting to be consumed
+     */
+    public CloudFileChannel(final int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException(
+                    "The channel must hold at least one file");
+        }
+        this.capacity = capacity;
+    }
+
+    /**
+     * Put a file into the channel, waiting for the consumer to take a file if
+     * the channel is full.
+     *
+     * @param file File to put
+     * @throws InterruptedException The thread was interrupted while waiting
+     * @throws IOException          The channel is closed or has failed
+     */
+    public final void put(final CloudFile file) throws InterruptedException,
+            IOException {
+        synchronized (this) {
+            while (files.size() >= capacity && !closed) {
+                wait();
+            }
+            if (failure != null) {
+                throw new IOException("The channel has failed", failure);
+            }
+            if (closed) {
+                throw new IOException("The channel is closed");
+            }
+            files.add(file);
+        }
+        notifyListener();
+    }
+
+    /**
+     * Close the channel once all the files have been put. The files already
+     * put can still be taken.
+     */
+    public final void close() {
+        synchronized (this) {
+            closed = true;
+            notifyAll();
+        }
+        notifyListener();
+    }
+
+    /**
+     * Stop the channel because the producer or the consumer failed. The
+     * producer cannot put files anymore and the consumer stops taking them.
+     *
+     * @param exception Exception that stopped the channel
+     */
+    public final void fail(final Exception exception) {
+        synchronized (this) {
+            if (failure == null) {
+                failure = exception;
+            }
+            closed = true;
+            notifyAll();
+        }
+        notifyListener();
+    }
+
+    /**
+     * Take the next file without waiting.
+     *
+     * @return Next file, null if no file is waiting
+     */
+    public final synchronized CloudFile poll() {
+        CloudFile file = files.poll();
+        if (file != null) {
+            notifyAll();
+        }
+        return file;
+    }
+
+    /**
+     * @return Next file without taking it, null if no file is waiting
+     */
+    public final synchronized CloudFile peek() {
+        return files.peek();
+    }
+
+    /**
+     * @return true if the channel is closed and all its files have been
+     * taken
+     */
+    public final synchronized boolean isDrained() {
+        return closed && files.isEmpty();
+    }
+
+    /**
+     * @return Exception that stopped the channel, null if the channel has not
+     * failed
+     */
+    public final synchronized Exception getFailure() {
+        return failure;
+    }
+
+    /**
+     * Set the listener notified when a file is put or when the channel is
+     * closed or fails. The listener is called on the thread changing the
+     * channel.
+     *
+     * @param listener Listener to notify, null to remove the listener
+     */
+    public final void setListener(final Runnable listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Notify the listener of a change, outside of the channel lock.
+     */
+    private void notifyListener() {
+        Runnable current = listener;
+        if (current != null) {
+            current.run();
+        }
+    }
+}
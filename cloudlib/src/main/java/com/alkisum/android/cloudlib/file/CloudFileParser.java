@@ -0,0 +1,25 @@
+package com.alkisum.android.cloudlib.file;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Interface for parsers converting the content of a file to a file object.
+ *
+ * @author Alkisum
+ * @version 1.9
+ * @since 1.9
+ */
+public interface CloudFileParser {
+
+    /**
+     * Parse the given content.
+     *
+     * @param file    File whose content is parsed, used for the metadata
+     * @param content Content of the file, the stream is not closed
+     * @return File object holding the parsed content
+     * @throws IOException An error occurred while reading or parsing the
+     *                     content
+     */
+    CloudFile parse(CloudFile file, InputStream content) throws IOException;
+}
@@ -0,0 +1,309 @@
+package com.alkisum.android.cloudlib.file;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Task processing a list of files in parallel on a thread pool shared by all
+ * the tasks. Each worker takes the next file of the list until all the files
+ * are processed, the results keep the order of the input files and are
+ * delivered on the main thread. Each file is processed independently, a file
+ * that cannot be processed does not stop the other files and is reported
+ * with its exception, so that only the failed files need to be processed
+ * again. An error thrown while processing a file, such as an
+ * OutOfMemoryError, is reported as the failure of this file, wrapped into an
+ * ExecutionException: the results are always delivered.
+ *
+ * @param <I> Type of the input files
+ * @param <O> Type of the processed files
+ * @author Alkisum
+ * @version 1.9
+ * @since 1.9
+ */
+public abstract class FileTask<I, O> {
+
+    /**
+     * Thread pool shared by all the tasks.
+     */
+    private static final ExecutorService EXECUTOR =
+            Executors.newCachedThreadPool(new ThreadFactory() {
+
+                /**
+                 * Number of threads created.
+                 */
+                private final AtomicInteger count = new AtomicInteger();
+
+                @Override
+                public Thread newThread(final Runnable runnable) {
+                    Thread thread = new Thread(runnable,
+                            "FileTask #" + count.incrementAndGet());
+                    thread.setPriority(Thread.MIN_PRIORITY);
+                    return thread;
+                }
+            });
+
+    /**
+     * Handler of the main thread, used to deliver the results.
+     */
+    private static final Handler MAIN_HANDLER =
+            new Handler(Looper.getMainLooper());
+
+    /**
+     * Files to process.
+     */
+    private final List<I> inputs;
+
+    /**
+     * Executor delivering the results, on the main thread by default.
+     */
+    private Executor deliveryExecutor = MAIN_HANDLER::post;
+
+    /**
+     * Maximum number of files processed at the same time.
+     */
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * Index of the next file to process.
+     */
+    private final AtomicInteger nextIndex = new AtomicInteger();
+
+    /**
+     * Exception that interrupted the task, null if the task has not been
+     * interrupted.
+     */
+    private final AtomicReference<Exception> exception =
+            new AtomicReference<>();
+
+    /**
+     * Flag set to true when the task has been executed.
+     */
+    private boolean executed;
+
+    /**
+     * Flag set to true when the task is cancelled.
+     */
+    private volatile boolean cancelled;
+
+    /**
+     * FileTask constructor.
+     *
+     * @param inputs Files to process
+     */
+    protected FileTask(final List<I> inputs) {
+        this.inputs = inputs;
+    }
+
+    /**
+     * Set the maximum number of files processed at the same time. The
+     * default value is the number of available processors.
+     *
+     * @param parallelism Maximum number of files processed at the same time
+     */
+    public final void setParallelism(final int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException(
+                    "At least one file must be processed at a time");
+        }
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Deliver the results with the given executor instead of the main
+     * thread, for example when no looper is running.
+     *
+     * @param deliveryExecutor Executor delivering the results
+     */
+    final void setDeliveryExecutor(final Executor deliveryExecutor) {
+        this.deliveryExecutor = deliveryExecutor;
+    }
+
+    /**
+     * Start processing the files. A task can be executed only once.
+     */
+    public final synchronized void execute() {
+        if (executed) {
+            throw new IllegalStateException(
+                    "The task has already been executed");
+        }
+        executed = true;
+        EXECUTOR.execute(this::coordinate);
+    }
+
+    /**
+     * Cancel the task. The files being processed are finished, the other
+     * files are not processed and no result is delivered.
+     */
+    public final void cancel() {
+        cancelled = true;
+        onCancelRequested();
+    }
+
+    /**
+     * @return true if the task has been cancelled
+     */
+    public final boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Process the files with the workers and deliver the results.
+     */
+    private void coordinate() {
+        Object[] outputs = new Object[inputs.size()];
+        Exception[] errors = new Exception[inputs.size()];
+        int workers = Math.max(1, Math.min(parallelism, inputs.size()));
+        CountDownLatch latch = new CountDownLatch(workers - 1);
+        for (int i = 1; i < workers; i++) {
+            EXECUTOR.execute(() -> {
+                try {
+                    work(outputs, errors);
+                } finally {
+                    latch.countDown();
+                }
+            });
+        }
+        work(outputs, errors);
+        try {
+            latch.await();
+            if (!cancelled) {
+                onProcessed();
+            }
+        } catch (Exception e) {
+            exception.compareAndSet(null, e);
+        } catch (Error e) {
+            exception.compareAndSet(null, new ExecutionException(e));
+        }
+        deliveryExecutor.execute(() -> deliver(outputs, errors));
+    }
+
+    /**
+     * Process the next files until all the files are processed or the task
+     * is cancelled.
+     *
+     * @param outputs Processed files, in the order of the input files
+     * @param errors  Exceptions thrown while processing the files, in the
+     *                order of the input files
+     */
+    private void work(final Object[] outputs, final Exception[] errors) {
+        int index = nextIndex.getAndIncrement();
+        while (index < outputs.length && !cancelled) {
+            try {
+                outputs[index] = process(inputs.get(index));
+            } catch (Exception e) {
+                errors[index] = e;
+            } catch (Error e) {
+                errors[index] = new ExecutionException(e);
+            }
+            index = nextIndex.getAndIncrement();
+        }
+    }
+
+    /**
+     * Deliver the results on the main thread.
+     *
+     * @param outputs Processed files, in the order of the input files
+     * @param errors  Exceptions thrown while processing the files, in the
+     *                order of the input files
+     */
+    @SuppressWarnings("unchecked")
+    private void deliver(final Object[] outputs, final Exception[] errors) {
+        if (cancelled) {
+            onCancelled();
+            return;
+        }
+        Map<I, Exception> failures = new LinkedHashMap<>();
+        if (exception.get() != null) {
+            onError(exception.get(), failures);
+            return;
+        }
+        List<O> results = new ArrayList<>(outputs.length);
+        Exception firstError = null;
+        for (int i = 0; i < outputs.length; i++) {
+            if (errors[i] == null) {
+                results.add((O) outputs[i]);
+            } else {
+                failures.put(inputs.get(i), errors[i]);
+                if (firstError == null) {
+                    firstError = errors[i];
+                }
+            }
+        }
+        if (firstError != null && results.isEmpty()) {
+            onError(firstError, failures);
+        } else {
+            onComplete(results, failures);
+        }
+    }
+
+    /**
+     * Process the given file, called from the worker threads.
+     *
+     * @param input File to process
+     * @return Processed file
+     * @throws Exception An error occurred while processing the file
+     */
+    protected abstract O process(I input) throws Exception;
+
+    /**
+     * Called on the main thread when all the files have been processed and
+     * at least one of them has been processed successfully.
+     *
+     * @param outputs  Files processed successfully, in the order of the
+     *                 input files
+     * @param failures Input files that could not be processed with the
+     *                 exception thrown for each of them, in the order of the
+     *                 input files, empty if all the files have been processed
+     *                 successfully
+     */
+    protected abstract void onComplete(List<O> outputs,
+                                       Map<I, Exception> failures);
+
+    /**
+     * Called on the main thread when none of the files could be processed,
+     * or when the task has been interrupted.
+     *
+     * @param e        First exception thrown while processing the files
+     * @param failures Input files that could not be processed with the
+     *                 exception thrown for each of them, in the order of the
+     *                 input files, empty if the task has been interrupted
+     */
+    protected abstract void onError(Exception e, Map<I, Exception> failures);
+
+    /**
+     * Called on the worker thread once all the files have been processed,
+     * before the results are delivered, unless the task has been cancelled.
+     */
+    protected void onProcessed() {
+
+    }
+
+    /**
+     * Called on the thread cancelling the task, right away, to release the
+     * workers waiting for a resource, such as a full channel. The task is
+     * finished only once the files being processed are finished.
+     */
+    protected void onCancelRequested() {
+
+    }
+
+    /**
+     * Called on the main thread when the task has been cancelled.
+     */
+    protected void onCancelled() {
+
+    }
+}
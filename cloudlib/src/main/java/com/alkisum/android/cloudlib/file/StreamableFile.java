@@ -0,0 +1,32 @@
+package com.alkisum.android.cloudlib.file;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Interface for the cloud files able to serialize their content into a
+ * stream. The uploader streams the content of the streamed files straight
+ * into the upload request, without writing a temporary file first.
+ *
+ * @author Alkisum
+ * @version 1.9
+ * @since 1.9
+ */
+public interface StreamableFile {
+
+    /**
+     * Serialize the content of the file into the given stream. The stream is
+     * not closed. The content can be serialized several times, for example
+     * when the upload is retried, and must be the same each time.
+     *
+     * @param out Stream where to write the content
+     * @throws IOException An error occurred while writing the content
+     */
+    void writeTo(OutputStream out) throws IOException;
+
+    /**
+     * @return true if the content is streamed into the upload request, false
+     * if the file object is uploaded
+     */
+    boolean isStreamed();
+}
@@ -0,0 +1,18 @@
+package com.alkisum.android.cloudlib.file.json;
+
+/**
+ * Interface for codecs decoding and encoding a type of data, usually
+ * generated for the classes annotated with JsonModel.
+ *
+ * @param <T> Type of the data
+ * @author Alkisum
+ * @version 1.9
+ * @since 1.9
+ */
+public interface JsonCodec<T> extends JsonDecoder<T>, JsonEncoder<T> {
+
+    /**
+     * @return Type of the data
+     */
+    Class<T> getType();
+}
@@ -0,0 +1,51 @@
+package com.alkisum.android.cloudlib.file.json;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Registry of the codecs used by JsonFileWriter to encode the data of the
+ * JSON files that do not contain a JSON object. The codecs are registered by
+ * the application, no reflection is used to find them.
+ *
+ * @author Alkisum
+ * @version 1.9
+ * @since 1.9
+ */
+public final class JsonCodecs {
+
+    /**
+     * Registered codecs, the keys are the types of data.
+     */
+    private static final Map<Class<?>, JsonCodec<?>> CODECS =
+            new ConcurrentHashMap<>();
+
+    /**
+     * JsonCodecs constructor.
+     */
+    private JsonCodecs() {
+
+    }
+
+    /**
+     * Register the given codec for its type of data, replacing the codec
+     * previously registered for the same type.
+     *
+     * @param codec Codec to register
+     */
+    public static void register(final JsonCodec<?> codec) {
+        CODECS.put(codec.getType(), codec);
+    }
+
+    /**
+     * Get the codec registered for the given type of data.
+     *
+     * @param type Type of data
+     * @param <T>  Type of data
+     * @return Codec, null if no codec is registered for the type
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> JsonCodec<T> get(final Class<T> type) {
+        return (JsonCodec<T>) CODECS.get(type);
+    }
+}
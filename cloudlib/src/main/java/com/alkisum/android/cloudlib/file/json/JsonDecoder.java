@@ -0,0 +1,27 @@
+package com.alkisum.android.cloudlib.file.json;
+
+import android.util.JsonReader;
+
+import java.io.IOException;
+
+/**
+ * Interface for decoders reading the content of a JSON file from a stream,
+ * without building the whole JSON tree in memory.
+ *
+ * @param <T> Type of the decoded data
+ * @author Alkisum
+ * @version 1.9
+ * @since 1.9
+ */
+public interface JsonDecoder<T> {
+
+    /**
+     * Decode the JSON value read by the given reader.
+     *
+     * @param reader Reader positioned before the value to decode
+     * @return Decoded data
+     * @throws IOException An error occurred while reading or decoding the
+     *                     value
+     */
+    T decode(JsonReader reader) throws IOException;
+}
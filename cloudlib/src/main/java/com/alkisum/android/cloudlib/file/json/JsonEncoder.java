@@ -0,0 +1,26 @@
+package com.alkisum.android.cloudlib.file.json;
+
+import android.util.JsonWriter;
+
+import java.io.IOException;
+
+/**
+ * Interface for encoders writing data as JSON to a stream, without building
+ * a JSON tree in memory.
+ *
+ * @param <T> Type of the encoded data
+ * @author Alkisum
+ * @version 1.9
+ * @since 1.9
+ */
+public interface JsonEncoder<T> {
+
+    /**
+     * Encode the given data.
+     *
+     * @param writer Writer to write the JSON value to
+     * @param value  Data to encode
+     * @throws IOException An error occurred while writing the value
+     */
+    void encode(JsonWriter writer, T value) throws IOException;
+}
@@ -1,30 +1,61 @@
 package com.alkisum.android.cloudlib.file.json;
 
+import android.util.JsonWriter;
+
 import com.alkisum.android.cloudlib.file.CloudFile;
+import com.alkisum.android.cloudlib.file.StreamableFile;
 
 import org.json.JSONObject;
 
+import java.io.BufferedWriter;
 import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.Charset;
 
 /**
  * Class defining a JSON file.
  *
  * @author Alkisum
- * @version 1.3
+ * @version 1.9
  * @since 1.0
  */
-public class JsonFile extends CloudFile {
+public class JsonFile extends CloudFile implements StreamableFile {
 
     /**
      * JSON file extension.
      */
     public static final String FILE_EXT = ".json";
 
+    /**
+     * Encoder writing the JSON objects, shared by all the files.
+     */
+    private static final JsonObjectEncoder JSON_OBJECT_ENCODER =
+            new JsonObjectEncoder();
+
     /**
      * JSON object contained in the file.
      */
     private final JSONObject jsonObject;
 
+    /**
+     * Data contained in the file, decoded by a JsonDecoder or equal to the
+     * JSON object.
+     */
+    private final Object data;
+
+    /**
+     * Flag set to true if the content is serialized without indentation.
+     */
+    private boolean compact;
+
+    /**
+     * Flag set to true if the content is streamed into the upload request
+     * even if the file has a file object.
+     */
+    private boolean streamed;
+
     /**
      * JsonFile constructor.
      *
@@ -34,6 +65,24 @@ public class JsonFile extends CloudFile {
     public JsonFile(final String name, final JSONObject jsonObject) {
         super(name);
         this.jsonObject = jsonObject;
+        this.data = jsonObject;
+    }
+
+    /**
+     * JsonFile constructor for typed data, encoded by JsonFileWriter with the
+     * codec registered in JsonCodecs for the class of the data.
+     *
+     * @param name File name
+     * @param data Data contained in the file
+     */
+    public JsonFile(final String name, final Object data) {
+        super(name);
+        if (data instanceof JSONObject) {
+            this.jsonObject = (JSONObject) data;
+        } else {
+            this.jsonObject = null;
+        }
+        this.data = data;
     }
 
     /**
@@ -49,12 +98,111 @@ public class JsonFile extends CloudFile {
              final long creationTime, final long modifiedTime) {
         super(name, file, creationTime, modifiedTime);
         this.jsonObject = jsonObject;
+        this.data = jsonObject;
+    }
+
+    /**
+     * JsonFile constructor for data decoded by a JsonDecoder.
+     *
+     * @param file File whose content has been decoded
+     * @param data Decoded data
+     */
+    JsonFile(final CloudFile file, final Object data) {
+        super(file.getName(), file.getFile(), file.getCreationTime(),
+                file.getModifiedTime());
+        if (data instanceof JSONObject) {
+            this.jsonObject = (JSONObject) data;
+        } else {
+            this.jsonObject = null;
+        }
+        this.data = data;
     }
 
     /**
-     * @return JSON object contained in the file
+     * @return JSON object contained in the file, null if the file contains
+     * typed data
      */
-    public final JSONObject getJsonObject() {
+    public JSONObject getJsonObject() {
         return jsonObject;
     }
+
+    /**
+     * @param <T> Type of the data, given by the decoder used to read the file
+     * @return Data decoded by the JsonDecoder used to read the file or given
+     * to the constructor, or the JSON object if the file was read without
+     * decoder
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T getData() {
+        return (T) data;
+    }
+
+    /**
+     * Serialize the content without indentation or line breaks when it is
+     * streamed with writeTo. The content is pretty-printed with an
+     * indentation of 4 spaces by default.
+     *
+     * @param compact true to serialize compact content, false to
+     *                pretty-print it
+     */
+    public final void setCompact(final boolean compact) {
+        this.compact = compact;
+    }
+
+    /**
+     * Stream the content into the upload request instead of uploading the
+     * file object, which can be an outdated copy of the content. A file
+     * without file object is always streamed.
+     *
+     * @param streamed true to stream the content, false to upload the file
+     *                 object
+     */
+    public final void setStreamed(final boolean streamed) {
+        this.streamed = streamed;
+    }
+
+    @Override
+    public final boolean isStreamed() {
+        return streamed || getFile() == null;
+    }
+
+    @Override
+    public final void writeTo(final OutputStream out) throws IOException {
+        JsonWriter writer = new JsonWriter(new BufferedWriter(
+                new OutputStreamWriter(out, Charset.forName("UTF-8"))));
+        if (!compact) {
+            writer.setIndent("    ");
+        }
+        encode(writer);
+        // The writer is not closed, the stream belongs to the caller
+        writer.flush();
+    }
+
+    /**
+     * Encode the content of the file, the JSON object or the typed data with
+     * the codec registered in JsonCodecs for its class.
+     *
+     * @param writer JSON writer
+     * @throws IOException No codec is registered for the data or an error
+     *                     occurred while writing the content
+     */
+    @SuppressWarnings("unchecked")
+    final void encode(final JsonWriter writer) throws IOException {
+        JSONObject object = getJsonObject();
+        if (object != null) {
+            JSON_OBJECT_ENCODER.encode(writer, object);
+            return;
+        }
+        Object data = getData();
+        if (data == null) {
+            throw new IOException("No data to write into " + getName());
+        }
+        JsonEncoder<Object> encoder =
+                (JsonEncoder<Object>) JsonCodecs.get(data.getClass());
+        if (encoder == null) {
+            throw new IOException("No codec registered for "
+                    + data.getClass().getName());
+        }
+        encoder.encode(writer, data);
+    }
 }
@@ -0,0 +1,92 @@
+package com.alkisum.android.cloudlib.file.json;
+
+import android.util.JsonReader;
+
+import com.alkisum.android.cloudlib.file.CloudFile;
+import com.alkisum.android.cloudlib.file.CloudFileParser;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.Charset;
+
+/**
+ * Parser converting the content of a file to a JSON file object. When a
+ * decoder is given, the content is decoded straight from the stream. Invalid
+ * content is reported as an IOException, the runtime exceptions thrown by the
+ * decoders included.
+ *
+ * @author Alkisum
+ * @version 1.9
+ * @since 1.9
+ */
+public class JsonFileParser implements CloudFileParser {
+
+    /**
+     * Size of the buffer used to read the content.
+     */
+    private static final int BUFFER_SIZE = 8192;
+
+    /**
+     * Decoder reading the content, null to build a JSON object from the whole
+     * content.
+     */
+    private final JsonDecoder<?> decoder;
+
+    /**
+     * JsonFileParser constructor, the content is converted to a JSON object.
+     */
+    public JsonFileParser() {
+        this(null);
+    }
+
+    /**
+     * JsonFileParser constructor.
+     *
+     * @param decoder Decoder reading the content, null to build a JSON object
+     *                from the whole content
+     */
+    public JsonFileParser(final JsonDecoder<?> decoder) {
+        this.decoder = decoder;
+    }
+
+    @Override
+    public final JsonFile parse(final CloudFile file, final InputStream content)
+            throws IOException {
+        Reader reader = new InputStreamReader(content, Charset.forName("UTF-8"));
+        if (decoder != null) {
+            Object data;
+            try {
+                // The JSON reader is not closed, the stream belongs to the
+                // caller
+                data = decoder.decode(new JsonReader(reader));
+            } catch (RuntimeException e) {
+                // Unexpected content, such as an array instead of an object,
+                // a malformed number or an unknown enum constant
+                throw new IOException("Invalid JSON in " + file.getName(), e);
+            }
+            return new JsonFile(file, data);
+        }
+        StringBuilder sb = new StringBuilder();
+        char[] buffer = new char[BUFFER_SIZE];
+        int read = reader.read(buffer);
+        while (read != -1) {
+            sb.append(buffer, 0, read);
+            read = reader.read(buffer);
+        }
+        try {
+            return new JsonFile(
+                    file.getName(),
+                    new JSONObject(sb.toString()),
+                    file.getFile(),
+                    file.getCreationTime(),
+                    file.getModifiedTime());
+        } catch (JSONException e) {
+            throw new IOException("Invalid JSON in " + file.getName(), e);
+        }
+    }
+}
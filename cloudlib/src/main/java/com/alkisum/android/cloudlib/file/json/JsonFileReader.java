@@ -1,44 +1,80 @@
 package com.alkisum.android.cloudlib.file.json;
 
-import android.os.AsyncTask;
+import android.util.Log;
 
+import com.alkisum.android.cloudlib.cache.JsonParseCache;
+import com.alkisum.android.cloudlib.cache.SnapshotCache;
 import com.alkisum.android.cloudlib.events.JsonFileReaderEvent;
 import com.alkisum.android.cloudlib.file.CloudFile;
+import com.alkisum.android.cloudlib.file.FileTask;
+import com.alkisum.android.cloudlib.utils.IoUtils;
 
 import org.greenrobot.eventbus.EventBus;
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.io.BufferedInputStream;
 import java.io.BufferedReader;
+import java.io.FileInputStream;
 import java.io.FileReader;
 import java.io.IOException;
-import java.util.ArrayList;
+import java.io.InputStream;
 import java.util.List;
+import java.util.Map;
 
 /**
- * Task reading data from files and converting it to JSON file objects.
+ * Task reading data from files and converting it to JSON file objects. The
+ * files are read in parallel. When a decoder is set, each file is decoded
+ * while it is read, its data being available with JsonFile.getData(). In
+ * lazy mode, the files are not read, their content is parsed on first access.
+ * When a snapshot cache is set, the JSON objects of the files that did not
+ * change are rebuilt from the snapshot instead of being parsed. When a parse
+ * cache is set, the content already parsed is recognized by its hash and a
+ * copy of its JSON object is used.
  *
  * @author Alkisum
- * @version 1.3
+ * @version 1.9
  * @since 1.0
  */
-public class JsonFileReader extends AsyncTask<Void, Void, List<JsonFile>> {
+public class JsonFileReader extends FileTask<CloudFile, JsonFile> {
 
     /**
-     * List of files to read.
+     * Log tag.
      */
-    private final List<CloudFile> files;
+    private static final String TAG = "JsonFileReader";
 
     /**
-     * Exception that can be set when an exception is caught during the task.
+     * Parser building JSON objects, used when no decoder is set.
      */
-    private Exception exception;
+    private static final JsonFileParser JSON_OBJECT_PARSER =
+            new JsonFileParser();
 
     /**
      * Subscriber ids allowed to process the events.
      */
     private final Integer[] subscriberIds;
 
+    /**
+     * Parser decoding the files, null if no decoder is set.
+     */
+    private JsonFileParser parser;
+
+    /**
+     * Flag set to true if the content of the files is parsed on first access.
+     */
+    private boolean lazy;
+
+    /**
+     * Cache storing the JSON objects of the files, null if no cache is set.
+     */
+    private SnapshotCache snapshotCache;
+
+    /**
+     * Cache of the parsed results keyed by content hash, null if no cache is
+     * set.
+     */
+    private JsonParseCache parseCache;
+
     /**
      * JsonFileReader constructor.
      *
@@ -47,54 +83,181 @@ public class JsonFileReader extends AsyncTask<Void, Void, List<JsonFile>> {
      */
     public JsonFileReader(final List<CloudFile> files,
                           final Integer[] subscriberIds) {
-        this.files = files;
+        super(files);
         this.subscriberIds = subscriberIds;
     }
 
+    /**
+     * Decode the files with the given decoder while they are read, instead of
+     * reading each file into a string to build a JSON object. This keeps the
+     * memory usage low for large files. Use a JsonObjectDecoder to get the
+     * same JSON objects as without decoder.
+     *
+     * @param decoder Decoder reading the files, null to build a JSON object
+     *                from the whole content of each file
+     */
+    public final void setDecoder(final JsonDecoder<?> decoder) {
+        if (decoder == null) {
+            parser = null;
+        } else {
+            parser = new JsonFileParser(decoder);
+        }
+    }
+
+    /**
+     * Give LazyJsonFile objects whose content is parsed on first access, with
+     * the decoder if one is set, and held through a soft reference so that it
+     * can be dropped under memory pressure. This is useful when only the
+     * metadata of most files are needed, for example to list them. The data
+     * of a lazy file must be treated as read-only, except the JSON object
+     * given by getJsonObject(), which is then kept in memory. The files are
+     * read by default.
+     *
+     * @param lazy true to parse the content on first access, false to parse
+     *             it right away
+     */
+    public final void setLazy(final boolean lazy) {
+        this.lazy = lazy;
+    }
+
+    /**
+     * Rebuild the JSON objects of the files that did not change from the
+     * given snapshot cache instead of parsing them, and store the JSON
+     * objects parsed in the cache. The snapshot is saved once all the files
+     * have been read. The files read with a decoder and the lazy files are
+     * not stored.
+     *
+     * @param snapshotCache Cache storing the JSON objects, null to parse all
+     *                      the files
+     */
+    public final void setSnapshotCache(final SnapshotCache snapshotCache) {
+        this.snapshotCache = snapshotCache;
+    }
+
+    /**
+     * Hash the content of each file and copy the JSON object parsed from the
+     * same content, by this reader or by another reader sharing the cache,
+     * instead of parsing it again. Each file gets its own JSON object, which
+     * can be modified. Each file is read once, its content being hashed and
+     * parsed only when it is not cached. The files read with a decoder are
+     * not cached, their data cannot be copied.
+     *
+     * @param parseCache Cache of the parsed JSON objects, null to parse each
+     *                   file
+     */
+    public final void setParseCache(final JsonParseCache parseCache) {
+        this.parseCache = parseCache;
+    }
+
     @Override
-    protected final List<JsonFile> doInBackground(final Void... params) {
-        List<JsonFile> jsonFiles = new ArrayList<>();
-        BufferedReader br = null;
-        try {
-            for (CloudFile file : files) {
-                br = new BufferedReader(new FileReader(file.getFile()));
-                StringBuilder sb = new StringBuilder();
-                String line = br.readLine();
-                while (line != null) {
-                    sb.append(line);
-                    line = br.readLine();
-                }
-                String jsonString = sb.toString();
-                JsonFile jsonFile = new JsonFile(
-                        file.getName(),
-                        new JSONObject(jsonString),
-                        file.getFile(),
-                        file.getCreationTime(),
-                        file.getModifiedTime());
-                jsonFiles.add(jsonFile);
+    protected final JsonFile process(final CloudFile file) throws Exception {
+        if (lazy) {
+            if (parser != null) {
+                return new LazyJsonFile(file, parser);
+            }
+            return new LazyJsonFile(file, JSON_OBJECT_PARSER);
+        }
+        if (parser != null) {
+            try (InputStream in = new BufferedInputStream(
+                    new FileInputStream(file.getFile()))) {
+                return parser.parse(file, in);
+            }
+        }
+        JSONObject jsonObject = null;
+        if (snapshotCache != null) {
+            jsonObject = snapshotCache.getJsonObject(file.getFile());
+        }
+        if (jsonObject == null) {
+            if (parseCache != null) {
+                jsonObject = parseWithCache(file);
+            } else {
+                jsonObject = readJsonObject(file);
             }
-        } catch (IOException | JSONException e) {
-            exception = e;
-        } finally {
-            try {
-                if (br != null) {
-                    br.close();
-                }
-            } catch (IOException e) {
-                exception = e;
+            if (snapshotCache != null) {
+                snapshotCache.putJsonObject(file.getFile(), jsonObject);
             }
         }
-        return jsonFiles;
+        return new JsonFile(
+                file.getName(),
+                jsonObject,
+                file.getFile(),
+                file.getCreationTime(),
+                file.getModifiedTime());
+    }
+
+    /**
+     * Get a copy of the JSON object parsed from the content of the given file
+     * from the parse cache, parsing the content if it is not cached.
+     *
+     * @param file File to read
+     * @return JSON object contained in the file
+     * @throws IOException   An error occurred while reading the file
+     * @throws JSONException The content is not a valid JSON object
+     */
+    private JSONObject parseWithCache(final CloudFile file)
+            throws IOException, JSONException {
+        // The content is hashed and parsed from the same bytes, the cached
+        // object always matches its hash even if the file changes meanwhile
+        byte[] content = IoUtils.readBytes(file.getFile());
+        String key = IoUtils.sha1(content);
+        JSONObject jsonObject = parseCache.get(key);
+        if (jsonObject == null) {
+            jsonObject = new JSONObject(new String(content, IoUtils.UTF_8));
+            parseCache.put(key, jsonObject);
+        }
+        return jsonObject;
+    }
+
+    /**
+     * Read the whole content of the given file and parse it.
+     *
+     * @param file File to read
+     * @return JSON object contained in the file
+     * @throws IOException   An error occurred while reading the file
+     * @throws JSONException The content is not a valid JSON object
+     */
+    private static JSONObject readJsonObject(final CloudFile file)
+            throws IOException, JSONException {
+        try (BufferedReader br = new BufferedReader(
+                new FileReader(file.getFile()))) {
+            StringBuilder sb = new StringBuilder();
+            String line = br.readLine();
+            while (line != null) {
+                sb.append(line);
+                line = br.readLine();
+            }
+            return new JSONObject(sb.toString());
+        }
     }
 
     @Override
-    protected final void onPostExecute(final List<JsonFile> jsonFiles) {
-        if (exception == null) {
-            EventBus.getDefault().post(new JsonFileReaderEvent(subscriberIds,
-                    JsonFileReaderEvent.OK, jsonFiles));
-        } else {
-            EventBus.getDefault().post(new JsonFileReaderEvent(subscriberIds,
-                    JsonFileReaderEvent.ERROR, exception));
+    protected final void onProcessed() {
+        if (snapshotCache == null) {
+            return;
+        }
+        try {
+            snapshotCache.save();
+        } catch (IOException e) {
+            // The files will be parsed again next time
+            Log.e(TAG, "Cannot save snapshot", e);
         }
     }
+
+    @Override
+    protected final void onComplete(final List<JsonFile> jsonFiles,
+                                    final Map<CloudFile, Exception> failures) {
+        int result = JsonFileReaderEvent.OK;
+        if (!failures.isEmpty()) {
+            result = JsonFileReaderEvent.PARTIAL;
+        }
+        EventBus.getDefault().post(new JsonFileReaderEvent(subscriberIds,
+                result, jsonFiles, failures));
+    }
+
+    @Override
+    protected final void onError(final Exception exception,
+                                 final Map<CloudFile, Exception> failures) {
+        EventBus.getDefault().post(new JsonFileReaderEvent(subscriberIds,
+                JsonFileReaderEvent.ERROR, exception, failures));
+    }
 }
@@ -1,28 +1,45 @@
 package com.alkisum.android.cloudlib.file.json;
 
-import android.os.AsyncTask;
-
 import com.alkisum.android.cloudlib.events.JsonFileWriterEvent;
 import com.alkisum.android.cloudlib.file.CloudFile;
+import com.alkisum.android.cloudlib.file.CloudFileChannel;
+import com.alkisum.android.cloudlib.file.FileTask;
 
 import org.greenrobot.eventbus.EventBus;
-import org.json.JSONException;
 
+import android.util.JsonWriter;
+import android.util.Log;
+
+import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileWriter;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.Charset;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Queue;
 
 /**
- * Task writing JSON objects into files.
+ * Task writing JSON objects into files. The files are written in parallel.
+ * The JSON objects are streamed to the files, pretty-printed by default. The
+ * typed data of the JSON files that do not contain a JSON object is streamed
+ * with the codecs registered in JsonCodecs. In streamed mode, no file is
+ * written, the JSON files are serialized by NcUploader straight into the
+ * upload requests.
  *
  * @author Alkisum
- * @version 1.3
+ * @version 1.9
  * @since 1.0
  */
-public class JsonFileWriter extends AsyncTask<Void, Void, Void> {
+public class JsonFileWriter extends FileTask<JsonFile, JsonFile> {
+
+    /**
+     * Log tag.
+     */
+    private static final String TAG = "JsonFileWriter";
 
     /**
      * Cache directory.
@@ -30,24 +47,26 @@ public class JsonFileWriter extends AsyncTask<Void, Void, Void> {
     private final File cacheDir;
 
     /**
-     * List of JSON objects to write to files.
+     * Subscriber ids allowed to process the events.
      */
-    private final List<JsonFile> jsonFiles;
+    private final Integer[] subscriberIds;
 
     /**
-     * Queue of CloudFile objects containing the JSON files to be uploaded.
+     * Flag set to true if the files are written without indentation.
      */
-    private final Queue<CloudFile> cloudFiles;
+    private boolean compact;
 
     /**
-     * Exception that can be set when an exception is caught during the task.
+     * Flag set to true if the JSON files are streamed to the server instead
+     * of being written into temporary files.
      */
-    private Exception exception;
+    private boolean streamed;
 
     /**
-     * Subscriber ids allowed to process the events.
+     * Channel where each file is put once written, null if the files are
+     * only given by the event.
      */
-    private final Integer[] subscriberIds;
+    private CloudFileChannel channel;
 
     /**
      * JsonFileWriter constructor.
@@ -59,45 +78,145 @@ public class JsonFileWriter extends AsyncTask<Void, Void, Void> {
     public JsonFileWriter(final File cacheDir,
                           final List<JsonFile> jsonFiles,
                           final Integer[] subscriberIds) {
+        super(jsonFiles);
         this.cacheDir = cacheDir;
-        this.jsonFiles = jsonFiles;
         this.subscriberIds = subscriberIds;
-        this.cloudFiles = new LinkedList<>();
     }
 
-    @Override
-    protected final Void doInBackground(final Void... params) {
+    /**
+     * Write the files without indentation or line breaks. The files are
+     * smaller, which saves disk space and upload bytes. The files are
+     * pretty-printed with an indentation of 4 spaces by default.
+     *
+     * @param compact true to write compact files, false to pretty-print them
+     */
+    public final void setCompact(final boolean compact) {
+        this.compact = compact;
+    }
 
-        try {
-            for (JsonFile jsonFile : jsonFiles) {
-                // Create temporary file, its name does not matter
-                File file = File.createTempFile(jsonFile.getBaseName(),
-                        JsonFile.FILE_EXT, cacheDir);
+    /**
+     * Skip the temporary files: the JSON files of the event are given as
+     * they are, and NcUploader serializes each of them straight into the
+     * request uploading it. The serialization of a file then overlaps with
+     * the upload of the previous one. The temporary files are written by
+     * default.
+     *
+     * @param streamed true to stream the JSON files to the server, false to
+     *                 write them into temporary files
+     */
+    public final void setStreamed(final boolean streamed) {
+        this.streamed = streamed;
+    }
+
+    /**
+     * Put each file into the given channel as soon as it is written, for
+     * NcUploader to upload it while the next files are written. The writer
+     * waits when the channel is full, the number of files waiting for their
+     * upload is then bounded. The files are put in the order they are
+     * written, which can differ from the list order. The channel is closed
+     * once all the files are processed, or failed if none of the files can
+     * be written or if the writer is cancelled. The event is still posted at
+     * the end.
+     *
+     * @param channel Channel where to put the files, null to only give the
+     *                files with the event
+     */
+    public final void setChannel(final CloudFileChannel channel) {
+        this.channel = channel;
+    }
 
-                FileWriter writer = new FileWriter(file);
-                writer.write(jsonFile.getJsonObject().toString(4));
-                writer.flush();
-                writer.close();
+    @Override
+    protected final JsonFile process(final JsonFile jsonFile)
+            throws Exception {
+        jsonFile.setStreamed(streamed);
+        if (streamed) {
+            jsonFile.setCompact(compact);
+            return publish(jsonFile);
+        }
 
-                jsonFile.setFile(file);
+        // Create temporary file, its name does not matter
+        File file = File.createTempFile(jsonFile.getBaseName(),
+                JsonFile.FILE_EXT, cacheDir);
 
-                cloudFiles.add(jsonFile);
+        try (JsonWriter writer = new JsonWriter(new BufferedWriter(
+                new OutputStreamWriter(new FileOutputStream(file),
+                        Charset.forName("UTF-8"))))) {
+            if (!compact) {
+                writer.setIndent("    ");
             }
-        } catch (IOException | JSONException e) {
-            exception = e;
+            jsonFile.encode(writer);
+        } catch (Exception e) {
+            // Do not leave the incomplete file in the cache directory
+            deleteTempFile(file);
+            throw e;
+        }
+
+        jsonFile.setFile(file);
+        return publish(jsonFile);
+    }
+
+    /**
+     * Delete the given temporary file, which could not be written.
+     *
+     * @param file Temporary file
+     */
+    private static void deleteTempFile(final File file) {
+        if (file.exists() && !file.delete()) {
+            Log.w(TAG, "Cannot delete " + file);
         }
+    }
 
-        return null;
+    /**
+     * Put the given file into the channel, if any.
+     *
+     * @param jsonFile JSON file to publish
+     * @return Published file
+     * @throws InterruptedException The writer was interrupted while waiting
+     *                              for the channel
+     * @throws IOException          The channel is closed or has failed
+     */
+    private JsonFile publish(final JsonFile jsonFile)
+            throws InterruptedException, IOException {
+        if (channel != null) {
+            channel.put(jsonFile);
+        }
+        return jsonFile;
+    }
+
+    @Override
+    protected final void onComplete(final List<JsonFile> jsonFiles,
+                                    final Map<JsonFile, Exception> failures) {
+        // Queue of CloudFile objects containing the JSON files to be uploaded
+        Queue<CloudFile> cloudFiles = new LinkedList<>(jsonFiles);
+        if (channel != null) {
+            channel.close();
+        }
+        int result = JsonFileWriterEvent.OK;
+        if (!failures.isEmpty()) {
+            result = JsonFileWriterEvent.PARTIAL;
+        }
+        EventBus.getDefault().post(new JsonFileWriterEvent(subscriberIds,
+                result, cloudFiles,
+                new LinkedHashMap<CloudFile, Exception>(failures)));
+    }
+
+    @Override
+    protected final void onError(final Exception exception,
+                                 final Map<JsonFile, Exception> failures) {
+        if (channel != null) {
+            channel.fail(exception);
+        }
+        EventBus.getDefault().post(new JsonFileWriterEvent(subscriberIds,
+                JsonFileWriterEvent.ERROR, exception,
+                new LinkedHashMap<CloudFile, Exception>(failures)));
     }
 
     @Override
-    protected final void onPostExecute(final Void param) {
-        if (exception == null) {
-            EventBus.getDefault().post(new JsonFileWriterEvent(subscriberIds,
-                    JsonFileWriterEvent.OK, cloudFiles));
-        } else {
-            EventBus.getDefault().post(new JsonFileWriterEvent(subscriberIds,
-                    JsonFileWriterEvent.ERROR, exception));
+    protected final void onCancelRequested() {
+        // Fail the channel right away, a worker waiting for a free slot
+        // would otherwise keep the task running
+        if (channel != null) {
+            channel.fail(new IOException("The writer has been cancelled"));
         }
     }
 }
@@ -0,0 +1,26 @@
+package com.alkisum.android.cloudlib.file.json;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Annotation marking a class for which the cloudlib-compiler annotation
+ * processor generates a JsonCodec at build time, named after the class with
+ * the JsonCodec suffix (ActivityJsonCodec for Activity).
+ * <p>
+ * The class must have a non-private constructor without parameter. Each
+ * non-static and non-transient field is mapped to the JSON property with the
+ * same name, the private fields must have a getter and a setter. The
+ * supported field types are the primitive types except char, their wrappers,
+ * String, enums, List and the other classes annotated with JsonModel.
+ *
+ * @author Alkisum
+ * @version 1.9
+ * @since 1.9
+ */
+@Retention(RetentionPolicy.CLASS)
+@Target(ElementType.TYPE)
+public @interface JsonModel {
+}
@@ -0,0 +1,119 @@
+package com.alkisum.android.cloudlib.file.json;
+
+import android.util.JsonReader;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.IOException;
+
+/**
+ * Decoder building a JSON object straight from the stream, without reading
+ * the file content into a string first. The numbers are converted the same
+ * way as by the JSONObject parser.
+ *
+ * @author Alkisum
+ * @version 1.9
+ * @since 1.9
+ */
+public class JsonObjectDecoder implements JsonDecoder<JSONObject> {
+
+    @Override
+    public final JSONObject decode(final JsonReader reader)
+            throws IOException {
+        try {
+            return readObject(reader);
+        } catch (JSONException e) {
+            throw new IOException("Invalid JSON object", e);
+        }
+    }
+
+    /**
+     * Read a JSON object.
+     *
+     * @param reader JSON reader
+     * @return JSON object
+     * @throws IOException   An error occurred while reading the object
+     * @throws JSONException The object cannot be built
+     */
+    private JSONObject readObject(final JsonReader reader)
+            throws IOException, JSONException {
+        JSONObject object = new JSONObject();
+        reader.beginObject();
+        while (reader.hasNext()) {
+            object.put(reader.nextName(), readValue(reader));
+        }
+        reader.endObject();
+        return object;
+    }
+
+    /**
+     * Read a JSON array.
+     *
+     * @param reader JSON reader
+     * @return JSON array
+     * @throws IOException   An error occurred while reading the array
+     * @throws JSONException The array cannot be built
+     */
+    private JSONArray readArray(final JsonReader reader)
+            throws IOException, JSONException {
+        JSONArray array = new JSONArray();
+        reader.beginArray();
+        while (reader.hasNext()) {
+            array.put(readValue(reader));
+        }
+        reader.endArray();
+        return array;
+    }
+
+    /**
+     * Read a JSON value.
+     *
+     * @param reader JSON reader
+     * @return JSON value
+     * @throws IOException   An error occurred while reading the value
+     * @throws JSONException The value cannot be built
+     */
+    private Object readValue(final JsonReader reader)
+            throws IOException, JSONException {
+        switch (reader.peek()) {
+            case BEGIN_OBJECT:
+                return readObject(reader);
+            case BEGIN_ARRAY:
+                return readArray(reader);
+            case BOOLEAN:
+                return reader.nextBoolean();
+            case NULL:
+                reader.nextNull();
+                return JSONObject.NULL;
+            case NUMBER:
+                return readNumber(reader.nextString());
+            default:
+                return reader.nextString();
+        }
+    }
+
+    /**
+     * Convert a number literal like the JSONObject parser: integers are
+     * returned as Integer or Long, the other numbers as Double.
+     *
+     * @param literal Number literal
+     * @return Number
+     */
+    private static Number readNumber(final String literal) {
+        if (literal.indexOf('.') == -1 && literal.indexOf('e') == -1
+                && literal.indexOf('E') == -1) {
+            try {
+                long value = Long.parseLong(literal);
+                if (value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE) {
+                    return (int) value;
+                }
+                return value;
+            } catch (NumberFormatException e) {
+                // Too large for a long
+            }
+        }
+        return Double.valueOf(literal);
+    }
+}
@@ -0,0 +1,94 @@
+package com.alkisum.android.cloudlib.file.json;
+
+import android.util.JsonWriter;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.util.Iterator;
+
+/**
+ * Encoder writing a JSON object straight to the stream, without building its
+ * string representation first. The numbers are written the same way as by
+ * JSONObject.toString().
+ *
+ * @author Alkisum
+ * @version 1.9
+ * @since 1.9
+ */
+public class JsonObjectEncoder implements JsonEncoder<JSONObject> {
+
+    @Override
+    public final void encode(final JsonWriter writer, final JSONObject value)
+            throws IOException {
+        writeValue(writer, value);
+    }
+
+    /**
+     * Write a JSON object.
+     *
+     * @param writer JSON writer
+     * @param object JSON object
+     * @throws IOException An error occurred while writing the object
+     */
+    private void writeObject(final JsonWriter writer, final JSONObject object)
+            throws IOException {
+        writer.beginObject();
+        Iterator<String> keys = object.keys();
+        while (keys.hasNext()) {
+            String key = keys.next();
+            writer.name(key);
+            writeValue(writer, object.opt(key));
+        }
+        writer.endObject();
+    }
+
+    /**
+     * Write a JSON array.
+     *
+     * @param writer JSON writer
+     * @param array  JSON array
+     * @throws IOException An error occurred while writing the array
+     */
+    private void writeArray(final JsonWriter writer, final JSONArray array)
+            throws IOException {
+        writer.beginArray();
+        for (int i = 0; i < array.length(); i++) {
+            writeValue(writer, array.opt(i));
+        }
+        writer.endArray();
+    }
+
+    /**
+     * Write a JSON value.
+     *
+     * @param writer JSON writer
+     * @param value  JSON value
+     * @throws IOException An error occurred while writing the value
+     */
+    private void writeValue(final JsonWriter writer, final Object value)
+            throws IOException {
+        if (value == null || value == JSONObject.NULL) {
+            writer.nullValue();
+        } else if (value instanceof JSONObject) {
+            writeObject(writer, (JSONObject) value);
+        } else if (value instanceof JSONArray) {
+            writeArray(writer, (JSONArray) value);
+        } else if (value instanceof Boolean) {
+            writer.value((boolean) (Boolean) value);
+        } else if (value instanceof Double || value instanceof Float) {
+            double number = ((Number) value).doubleValue();
+            if (number == (long) number) {
+                // Integral values are written without fraction by JSONObject
+                writer.value((long) number);
+            } else {
+                writer.value(number);
+            }
+        } else if (value instanceof Number) {
+            writer.value((Number) value);
+        } else {
+            writer.value(value.toString());
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package com.alkisum.android.cloudlib.file.json;
+
+import com.alkisum.android.cloudlib.file.CloudFile;
+
+import org.json.JSONObject;
+
+import java.io.BufferedInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.ref.SoftReference;
+
+/**
+ * JSON file whose content is read and parsed on first access instead of when
+ * the file object is created. The parsed data is held through a soft
+ * reference, the garbage collector can then drop it under memory pressure,
+ * in which case the file is parsed again on the next access. The data given
+ * by getData() and loadData() must then be treated as read-only: its changes
+ * are lost when it is dropped. The JSON object given by getJsonObject() is
+ * kept in memory from then on, it can be modified. The metadata are always
+ * available.
+ *
+ * @author Alkisum
+ * @version 1.9
+ * @since 1.9
+ */
+public class LazyJsonFile extends JsonFile {
+
+    /**
+     * Parser reading the file.
+     */
+    private final JsonFileParser parser;
+
+    /**
+     * Data parsed from the file, null until the file is parsed.
+     */
+    private SoftReference<Object> cache;
+
+    /**
+     * JSON object given by getJsonObject(), kept in memory so that its
+     * changes are not lost, null until then.
+     */
+    private JSONObject pinned;
+
+    /**
+     * LazyJsonFile constructor.
+     *
+     * @param file   File whose content is parsed on first access
+     * @param parser Parser reading the file
+     */
+    LazyJsonFile(final CloudFile file, final JsonFileParser parser) {
+        super(file, null);
+        this.parser = parser;
+    }
+
+    /**
+     * Get the JSON object, parsing the file if it is not held anymore. The
+     * file can then be read on the calling thread. The JSON object is kept in
+     * memory from then on, the changes made to it are never lost.
+     *
+     * @return JSON object contained in the file, null if the file is read
+     * with a decoder giving typed data
+     * @throws IllegalStateException The file cannot be read or parsed
+     */
+    @Override
+    public final synchronized JSONObject getJsonObject() {
+        Object data = getData();
+        if (data instanceof JSONObject) {
+            pinned = (JSONObject) data;
+            return pinned;
+        }
+        return null;
+    }
+
+    /**
+     * Get the data, parsing the file if it is not held anymore. The file can
+     * then be read on the calling thread. The data can be dropped and parsed
+     * again later, its changes can then be lost.
+     *
+     * @param <T> Type of the data, given by the decoder used to read the file
+     * @return Data decoded by the decoder used to read the file, or the JSON
+     * object if the file is read without decoder
+     * @throws IllegalStateException The file cannot be read or parsed
+     */
+    @Override
+    public final <T> T getData() {
+        try {
+            return loadData();
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot read " + getName(), e);
+        }
+    }
+
+    /**
+     * Get the data, parsing the file if it is not held anymore. The data can
+     * be dropped and parsed again later, its changes can then be lost.
+     *
+     * @param <T> Type of the data, given by the decoder used to read the file
+     * @return Data decoded by the decoder used to read the file, or the JSON
+     * object if the file is read without decoder
+     * @throws IOException An error occurred while reading or parsing the file
+     */
+    @SuppressWarnings("unchecked")
+    public final synchronized <T> T loadData() throws IOException {
+        if (pinned != null) {
+            return (T) pinned;
+        }
+        Object data = null;
+        if (cache != null) {
+            data = cache.get();
+        }
+        if (data == null) {
+            try (InputStream in = new BufferedInputStream(
+                    new FileInputStream(getFile()))) {
+                data = parser.parse(this, in).getData();
+            }
+            cache = new SoftReference<>(data);
+        }
+        return (T) data;
+    }
+
+    /**
+     * @return true if the data is currently held in memory, false if the next
+     * access parses the file
+     */
+    public final synchronized boolean isLoaded() {
+        return pinned != null || cache != null && cache.get() != null;
+    }
+}
@@ -0,0 +1,70 @@
+package com.alkisum.android.cloudlib.file.txt;
+
+import com.alkisum.android.cloudlib.file.CloudFile;
+
+import java.io.IOException;
+
+/**
+ * TXT file too large to hold its content in a string. The content is mapped
+ * into memory and exposed as a MappedText, decoded block by block when it is
+ * accessed, or read line by line with a LineCursor. The heap then only holds
+ * the decoded blocks recently accessed.
+ *
+ * @author Alkisum
+ * @version 1.9
+ * @since 1.9
+ */
+public class LargeTxtFile extends TxtFile {
+
+    /**
+     * Text of the file, null until the file is mapped.
+     */
+    private MappedText text;
+
+    /**
+     * LargeTxtFile constructor.
+     *
+     * @param file File to map
+     */
+    LargeTxtFile(final CloudFile file) {
+        super(file.getName(), null, file.getFile(), file.getCreationTime(),
+                file.getModifiedTime());
+    }
+
+    /**
+     * Get the text of the file, mapping the file on first access.
+     *
+     * @return Text of the file
+     * @throws IOException An error occurred while mapping the file
+     */
+    public final synchronized MappedText getText() throws IOException {
+        if (text == null) {
+            text = MappedText.map(getFile());
+        }
+        return text;
+    }
+
+    /**
+     * @return Cursor reading the text of the file line by line
+     * @throws IOException An error occurred while mapping the file
+     */
+    public final LineCursor getLines() throws IOException {
+        return new LineCursor(getText());
+    }
+
+    /**
+     * Get the whole content, which loads the whole file into the heap. Use
+     * getText() or getLines() to access the content block by block.
+     *
+     * @return File content
+     * @throws IllegalStateException The file cannot be mapped
+     */
+    @Override
+    public final String getContent() {
+        try {
+            return getText().toString();
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot read " + getName(), e);
+        }
+    }
+}
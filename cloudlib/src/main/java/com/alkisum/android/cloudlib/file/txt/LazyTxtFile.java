@@ -0,0 +1,84 @@
+package com.alkisum.android.cloudlib.file.txt;
+
+import com.alkisum.android.cloudlib.file.CloudFile;
+
+import java.io.IOException;
+import java.lang.ref.SoftReference;
+
+/**
+ * TXT file whose content is read on first access instead of when the file
+ * object is created. The content is held through a soft reference, the
+ * garbage collector can then drop it under memory pressure, in which case it
+ * is read again on the next access. The metadata are always available.
+ *
+ * @author Alkisum
+ * @version 1.9
+ * @since 1.9
+ */
+public class LazyTxtFile extends TxtFile {
+
+    /**
+     * Size in bytes above which the file is mapped into memory.
+     */
+    private final long mapThreshold;
+
+    /**
+     * Content read from the file, null until the content is read.
+     */
+    private SoftReference<String> cache;
+
+    /**
+     * LazyTxtFile constructor.
+     *
+     * @param file         File whose content is read on first access
+     * @param mapThreshold Size in bytes above which the file is mapped into
+     *                     memory
+     */
+    LazyTxtFile(final CloudFile file, final long mapThreshold) {
+        super(file.getName(), null, file.getFile(), file.getCreationTime(),
+                file.getModifiedTime());
+        this.mapThreshold = mapThreshold;
+    }
+
+    /**
+     * Get the file content, reading it if it is not held anymore. The file
+     * can then be read on the calling thread.
+     *
+     * @return File content
+     * @throws IllegalStateException The file cannot be read
+     */
+    @Override
+    public final String getContent() {
+        try {
+            return loadContent();
+        } catch (IOException e) {
+            throw new IllegalStateException("Cannot read " + getName(), e);
+        }
+    }
+
+    /**
+     * Get the file content, reading it if it is not held anymore.
+     *
+     * @return File content
+     * @throws IOException An error occurred while reading the file
+     */
+    public final synchronized String loadContent() throws IOException {
+        String content = null;
+        if (cache != null) {
+            content = cache.get();
+        }
+        if (content == null) {
+            content = TxtContentReader.read(getFile(), mapThreshold);
+            cache = new SoftReference<>(content);
+        }
+        return content;
+    }
+
+    /**
+     * @return true if the content is currently held in memory, false if the
+     * next access reads the file
+     */
+    public final synchronized boolean isLoaded() {
+        return cache != null && cache.get() != null;
+    }
+}
@@ -0,0 +1,94 @@
+package com.alkisum.android.cloudlib.file.txt;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Cursor reading a text line by line, without copying the text. The lines
+ * are separated by "\n", "\r\n" or "\r", the separators are not part of the
+ * lines. A separator ending the text is not followed by an empty line.
+ *
+ * @author Alkisum
+ * @version 1.9
+ * @since 1.9
+ */
+public class LineCursor implements Iterator<String> {
+
+    /**
+     * Text to read.
+     */
+    private final CharSequence text;
+
+    /**
+     * Index of the first character of the next line.
+     */
+    private int position;
+
+    /**
+     * LineCursor constructor.
+     *
+     * @param text Text to read, such as a MappedText
+     */
+    public LineCursor(final CharSequence text) {
+        this.text = text;
+    }
+
+    @Override
+    public final boolean hasNext() {
+        return position < text.length();
+    }
+
+    @Override
+    public final String next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        int length = text.length();
+        int end = position;
+        char c = 0;
+        while (end < length) {
+            c = text.charAt(end);
+            if (c == '\n' || c == '\r') {
+                break;
+            }
+            end++;
+        }
+        String line = text.subSequence(position, end).toString();
+        position = end;
+        if (end < length) {
+            position++;
+            if (c == '\r' && position < length
+                    && text.charAt(position) == '\n') {
+                position++;
+            }
+        }
+        return line;
+    }
+
+    @Override
+    public final void remove() {
+        throw new UnsupportedOperationException("The text is read-only");
+    }
+
+    /**
+     * @return Index in the text of the first character of the next line
+     */
+    public final int getPosition() {
+        return position;
+    }
+
+    /**
+     * Move the cursor to the given index, for example to a position saved
+     * with getPosition(). The next line starts at this index.
+     *
+     * @param position Index in the text of the first character of the next
+     *                 line
+     */
+    public final void seek(final int position) {
+        if (position < 0 || position > text.length()) {
+            throw new IndexOutOfBoundsException("Position: " + position
+                    + ", length: " + text.length());
+        }
+        this.position = position;
+    }
+}
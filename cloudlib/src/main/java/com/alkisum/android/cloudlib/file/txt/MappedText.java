@@ -0,0 +1,337 @@
+package com.alkisum.android.cloudlib.file.txt;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Text of a UTF-8 file mapped into memory, exposed as a character sequence.
+ * The file is split into blocks indexed when the text is created, and each
+ * block is decoded only when one of its characters is accessed. The decoded
+ * blocks are kept in a bounded cache, the least recently used block being
+ * dropped first, the heap usage then stays bounded whatever the file size.
+ *
+ * @author Alkisum
+ * @version 1.9
+ * @since 1.9
+ */
+public final class MappedText implements CharSequence {
+
+    /**
+     * Size in bytes of the blocks decoded at once.
+     */
+    private static final int BLOCK_SIZE = 64 * 1024;
+
+    /**
+     * Default number of decoded blocks kept in the cache.
+     */
+    private static final int DEFAULT_CACHED_BLOCKS = 16;
+
+    /**
+     * Charset of the text.
+     */
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /**
+     * Content of the file.
+     */
+    private final ByteBuffer bytes;
+
+    /**
+     * Offset in bytes of each block, followed by the size of the content.
+     */
+    private final int[] blockOffsets;
+
+    /**
+     * Index of the first character of each block, followed by the length of
+     * the text.
+     */
+    private final int[] blockStarts;
+
+    /**
+     * Number of blocks.
+     */
+    private final int blockCount;
+
+    /**
+     * Decoder of the blocks.
+     */
+    private final CharsetDecoder decoder;
+
+    /**
+     * Decoded blocks, the keys are the block indexes, in access order.
+     */
+    private final Map<Integer, char[]> blocks;
+
+    /**
+     * Index of the block accessed last, -1 if no block has been accessed.
+     */
+    private int lastBlock = -1;
+
+    /**
+     * Characters of the block accessed last.
+     */
+    private char[] lastChars;
+
+    /**
+     * MappedText constructor.
+     *
+     * @param bytes        Content of the file
+     * @param cachedBlocks Number of decoded blocks kept in the cache
+     */
+    private MappedText(final ByteBuffer bytes, final int cachedBlocks) {
+        this.bytes = bytes;
+        this.decoder = UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        this.blocks = new LinkedHashMap<Integer, char[]>(
+                cachedBlocks, 0.75f, true) {
+
+            @Override
+            protected boolean removeEldestEntry(
+                    final Map.Entry<Integer, char[]> eldest) {
+                return size() > cachedBlocks;
+            }
+        };
+        List<Integer> offsets = new ArrayList<>();
+        List<Integer> starts = new ArrayList<>();
+        int size = bytes.limit();
+        int offset = 0;
+        int length = 0;
+        while (offset < size) {
+            int end = Math.min(offset + BLOCK_SIZE, size);
+            // Do not split the byte sequence of a character
+            while (end < size && end > offset
+                    && (bytes.get(end) & 0xC0) == 0x80) {
+                end--;
+            }
+            if (end == offset) {
+                end = Math.min(offset + BLOCK_SIZE, size);
+            }
+            offsets.add(offset);
+            starts.add(length);
+            length += decode(offset, end).length;
+            offset = end;
+        }
+        blockCount = offsets.size();
+        blockOffsets = new int[blockCount + 1];
+        blockStarts = new int[blockCount + 1];
+        for (int i = 0; i < blockCount; i++) {
+            blockOffsets[i] = offsets.get(i);
+            blockStarts[i] = starts.get(i);
+        }
+        blockOffsets[blockCount] = size;
+        blockStarts[blockCount] = length;
+    }
+
+    /**
+     * Map the given file into memory. The file is read once to index the
+     * blocks, none of them being kept.
+     *
+     * @param file File to map
+     * @return Text of the file
+     * @throws IOException An error occurred while mapping the file
+     */
+    public static MappedText map(final File file) throws IOException {
+        return map(file, DEFAULT_CACHED_BLOCKS);
+    }
+
+    /**
+     * Map the given file into memory. The file is read once to index the
+     * blocks, none of them being kept.
+     *
+     * @param file         File to map
+     * @param cachedBlocks Number of decoded blocks of 64 KiB kept in the
+     *                     cache
+     * @return Text of the file
+     * @throws IOException An error occurred while mapping the file
+     */
+    public static MappedText map(final File file, final int cachedBlocks)
+            throws IOException {
+        if (cachedBlocks < 1) {
+            throw new IllegalArgumentException(
+                    "At least one block must be cached");
+        }
+        try (FileInputStream in = new FileInputStream(file)) {
+            FileChannel channel = in.getChannel();
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException(file.getName()
+                        + " is too large to be mapped");
+            }
+            // The mapping stays valid once the channel is closed
+            return new MappedText(channel.map(FileChannel.MapMode.READ_ONLY,
+                    0, size), cachedBlocks);
+        }
+    }
+
+    @Override
+    public int length() {
+        return blockStarts[blockCount];
+    }
+
+    @Override
+    public synchronized char charAt(final int index) {
+        if (index < 0 || index >= length()) {
+            throw new IndexOutOfBoundsException("Index: " + index
+                    + ", length: " + length());
+        }
+        if (lastBlock == -1 || index < blockStarts[lastBlock]
+                || index >= blockStarts[lastBlock + 1]) {
+            int block = Arrays.binarySearch(blockStarts, 0, blockCount,
+                    index);
+            if (block < 0) {
+                block = -block - 2;
+            }
+            lastChars = getBlock(block);
+            lastBlock = block;
+        }
+        return lastChars[index - blockStarts[lastBlock]];
+    }
+
+    @Override
+    public CharSequence subSequence(final int start, final int end) {
+        if (start < 0 || end > length() || start > end) {
+            throw new IndexOutOfBoundsException("Start: " + start + ", end: "
+                    + end + ", length: " + length());
+        }
+        return new Slice(start, end);
+    }
+
+    /**
+     * Decode the whole text into a string, which loads the whole file into
+     * the heap.
+     *
+     * @return Text of the file
+     */
+    @Override
+    public String toString() {
+        return copy(0, length());
+    }
+
+    /**
+     * Copy the given range of the text into a string.
+     *
+     * @param start Index of the first character
+     * @param end   Index following the last character
+     * @return Characters of the range
+     */
+    private synchronized String copy(final int start, final int end) {
+        StringBuilder sb = new StringBuilder(end - start);
+        int index = start;
+        while (index < end) {
+            charAt(index);
+            int blockStart = blockStarts[lastBlock];
+            int count = Math.min(end, blockStarts[lastBlock + 1]) - index;
+            sb.append(lastChars, index - blockStart, count);
+            index += count;
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Get the characters of the given block, decoding it if it is not
+     * cached.
+     *
+     * @param block Block index
+     * @return Characters of the block
+     */
+    private char[] getBlock(final int block) {
+        char[] chars = blocks.get(block);
+        if (chars == null) {
+            chars = decode(blockOffsets[block], blockOffsets[block + 1]);
+            blocks.put(block, chars);
+        }
+        return chars;
+    }
+
+    /**
+     * Decode the given range of bytes.
+     *
+     * @param start Offset of the first byte
+     * @param end   Offset following the last byte
+     * @return Decoded characters
+     */
+    private char[] decode(final int start, final int end) {
+        ByteBuffer range = bytes.duplicate();
+        range.limit(end);
+        range.position(start);
+        try {
+            CharBuffer chars = decoder.decode(range);
+            char[] array = new char[chars.remaining()];
+            chars.get(array);
+            return array;
+        } catch (CharacterCodingException e) {
+            // The malformed input is replaced, this cannot happen
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Range of the text, its characters are read from the text.
+     */
+    private final class Slice implements CharSequence {
+
+        /**
+         * Index in the text of the first character.
+         */
+        private final int start;
+
+        /**
+         * Index in the text following the last character.
+         */
+        private final int end;
+
+        /**
+         * Slice constructor.
+         *
+         * @param start Index in the text of the first character
+         * @param end   Index in the text following the last character
+         */
+        private Slice(final int start, final int end) {
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        public int length() {
+            return end - start;
+        }
+
+        @Override
+        public char charAt(final int index) {
+            if (index < 0 || index >= length()) {
+                throw new IndexOutOfBoundsException("Index: " + index
+                        + ", length: " + length());
+            }
+            return MappedText.this.charAt(start + index);
+        }
+
+        @Override
+        public CharSequence subSequence(final int subStart,
+                                        final int subEnd) {
+            if (subStart < 0 || subEnd > length() || subStart > subEnd) {
+                throw new IndexOutOfBoundsException("Start: " + subStart
+                        + ", end: " + subEnd + ", length: " + length());
+            }
+            return new Slice(start + subStart, start + subEnd);
+        }
+
+        @Override
+        public String toString() {
+            return copy(start, end);
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.alkisum.android.cloudlib.file.txt;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+
+/**
+ * Reader loading the whole content of a TXT file with a single channel read
+ * sized to the file, or by mapping the file into memory above a threshold.
+ * The content is decoded as UTF-8 in one pass and kept as is, line separators
+ * included.
+ *
+ * @author Alkisum
+ * @version 1.9
+ * @since 1.9
+ */
+final class TxtContentReader {
+
+    /**
+     * Default size in bytes above which the files are mapped into memory.
+     */
+    static final long DEFAULT_MAP_THRESHOLD = 1024 * 1024;
+
+    /**
+     * Charset of the TXT files.
+     */
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /**
+     * TxtContentReader constructor.
+     */
+    private TxtContentReader() {
+
+    }
+
+    /**
+     * Read the content of the given file.
+     *
+     * @param file         File to read
+     * @param mapThreshold Size in bytes above which the file is mapped into
+     *                     memory instead of being read into a buffer
+     * @return File content
+     * @throws IOException An error occurred while reading the file
+     */
+    static String read(final File file, final long mapThreshold)
+            throws IOException {
+        try (FileInputStream in = new FileInputStream(file)) {
+            FileChannel channel = in.getChannel();
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException(file.getName()
+                        + " is too large to be read into a string");
+            }
+            if (size > mapThreshold) {
+                ByteBuffer mapped = channel.map(
+                        FileChannel.MapMode.READ_ONLY, 0, size);
+                return UTF_8.decode(mapped).toString();
+            }
+            ByteBuffer buffer = ByteBuffer.allocate((int) size);
+            int read = 0;
+            // The file can get shorter while it is read
+            while (buffer.hasRemaining() && read != -1) {
+                read = channel.read(buffer);
+            }
+            return new String(buffer.array(), 0, buffer.position(), UTF_8);
+        }
+    }
+}
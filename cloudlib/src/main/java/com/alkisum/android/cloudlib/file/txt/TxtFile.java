@@ -1,17 +1,23 @@
 package com.alkisum.android.cloudlib.file.txt;
 
 import com.alkisum.android.cloudlib.file.CloudFile;
+import com.alkisum.android.cloudlib.file.StreamableFile;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
 
 /**
  * Class defining a TXT file.
  *
  * @author Alkisum
- * @version 1.3
+ * @version 1.9
  * @since 1.3
  */
-public class TxtFile extends CloudFile {
+public class TxtFile extends CloudFile implements StreamableFile {
 
     /**
      * TXT file extension.
@@ -23,6 +29,12 @@ public class TxtFile extends CloudFile {
      */
     private final String content;
 
+    /**
+     * Flag set to true if the content is streamed into the upload request
+     * even if the file has a file object.
+     */
+    private boolean streamed;
+
     /**
      * TxtFile constructor.
      *
@@ -55,4 +67,29 @@ public class TxtFile extends CloudFile {
     public String getContent() {
         return content;
     }
+
+    /**
+     * Stream the content into the upload request instead of uploading the
+     * file object, which can be an outdated copy of the content. A file
+     * without file object is always streamed.
+     *
+     * @param streamed true to stream the content, false to upload the file
+     *                 object
+     */
+    public final void setStreamed(final boolean streamed) {
+        this.streamed = streamed;
+    }
+
+    @Override
+    public final boolean isStreamed() {
+        return streamed || getFile() == null;
+    }
+
+    @Override
+    public final void writeTo(final OutputStream out) throws IOException {
+        Writer writer = new OutputStreamWriter(out, Charset.forName("UTF-8"));
+        writer.write(getContent());
+        // The writer is not closed, the stream belongs to the caller
+        writer.flush();
+    }
 }
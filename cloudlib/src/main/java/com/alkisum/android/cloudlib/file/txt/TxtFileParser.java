@@ -0,0 +1,42 @@
+package com.alkisum.android.cloudlib.file.txt;
+
+import com.alkisum.android.cloudlib.file.CloudFile;
+import com.alkisum.android.cloudlib.file.CloudFileParser;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Parser converting the content of a file to a TXT file object. The content is
+ * decoded as UTF-8 and kept as is, line separators included.
+ *
+ * @author Alkisum
+ * @version 1.9
+ * @since 1.9
+ */
+public class TxtFileParser implements CloudFileParser {
+
+    /**
+     * Size of the buffer used to read the content.
+     */
+    private static final int BUFFER_SIZE = 8192;
+
+    @Override
+    public final TxtFile parse(final CloudFile file, final InputStream content)
+            throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[BUFFER_SIZE];
+        int read = content.read(buffer);
+        while (read != -1) {
+            out.write(buffer, 0, read);
+            read = content.read(buffer);
+        }
+        return new TxtFile(
+                file.getName(),
+                out.toString("UTF-8"),
+                file.getFile(),
+                file.getCreationTime(),
+                file.getModifiedTime());
+    }
+}
@@ -1,41 +1,63 @@
 package com.alkisum.android.cloudlib.file.txt;
 
-import android.os.AsyncTask;
+import android.util.Log;
 
+import com.alkisum.android.cloudlib.cache.SnapshotCache;
 import com.alkisum.android.cloudlib.events.TxtFileReaderEvent;
 import com.alkisum.android.cloudlib.file.CloudFile;
+import com.alkisum.android.cloudlib.file.FileTask;
 
 import org.greenrobot.eventbus.EventBus;
 
-import java.io.BufferedReader;
-import java.io.FileReader;
 import java.io.IOException;
-import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 /**
- * Task reading data from files and converting it to TXT file objects.
+ * Task reading data from files and converting it to TXT file objects. The
+ * files are read in parallel. Each file is read with a single channel read,
+ * or mapped into memory when it is large, and decoded as UTF-8 in one pass.
+ * The content is kept as is, line separators included. In lazy mode, the
+ * files are not read, their content is read on first access. The files
+ * larger than the large file threshold are given as LargeTxtFile objects,
+ * their content being mapped instead of read. When a snapshot cache is set,
+ * the content of the files that did not change is taken from the snapshot.
  *
  * @author Alkisum
- * @version 1.3
+ * @version 1.9
  * @since 1.3
  */
-public class TxtFileReader extends AsyncTask<Void, Void, List<TxtFile>> {
+public class TxtFileReader extends FileTask<CloudFile, TxtFile> {
 
     /**
-     * List of files to read.
+     * Log tag.
      */
-    private final List<CloudFile> files;
+    private static final String TAG = "TxtFileReader";
 
     /**
-     * Exception that can be set when an exception is caught during the task.
+     * Subscriber ids allowed to process the events.
      */
-    private Exception exception;
+    private final Integer[] subscriberIds;
 
     /**
-     * Subscriber ids allowed to process the events.
+     * Size in bytes above which the files are mapped into memory.
      */
-    private final Integer[] subscriberIds;
+    private long mapThreshold = TxtContentReader.DEFAULT_MAP_THRESHOLD;
+
+    /**
+     * Flag set to true if the content of the files is read on first access.
+     */
+    private boolean lazy;
+
+    /**
+     * Size in bytes above which the files are given as LargeTxtFile objects.
+     */
+    private long largeFileThreshold = Long.MAX_VALUE;
+
+    /**
+     * Cache storing the content of the files, null if no cache is set.
+     */
+    private SnapshotCache snapshotCache;
 
     /**
      * TxtFileReader constructor.
@@ -45,57 +67,114 @@ public class TxtFileReader extends AsyncTask<Void, Void, List<TxtFile>> {
      */
     public TxtFileReader(final List<CloudFile> files,
                          final Integer[] subscriberIds) {
-        this.files = files;
+        super(files);
         this.subscriberIds = subscriberIds;
     }
 
+    /**
+     * Set the size above which the files are mapped into memory instead of
+     * being read into a buffer. Mapping avoids copying large files through
+     * a heap buffer before decoding them. The default size is 1 MiB.
+     *
+     * @param mapThreshold Size in bytes above which the files are mapped
+     */
+    public final void setMapThreshold(final long mapThreshold) {
+        this.mapThreshold = mapThreshold;
+    }
+
+    /**
+     * Give LazyTxtFile objects whose content is read on first access, and
+     * held through a soft reference so that it can be dropped under memory
+     * pressure. This is useful when only the metadata of most files are
+     * needed, for example to list them. The files are read by default.
+     *
+     * @param lazy true to read the content on first access, false to read it
+     *             right away
+     */
+    public final void setLazy(final boolean lazy) {
+        this.lazy = lazy;
+    }
+
+    /**
+     * Give the files larger than the given size as LargeTxtFile objects,
+     * whose content is mapped into memory and decoded block by block when it
+     * is accessed instead of being held in a string. This applies in lazy
+     * mode too. The large files are read like the others by default.
+     *
+     * @param largeFileThreshold Size in bytes above which the files are
+     *                           given as LargeTxtFile objects
+     */
+    public final void setLargeFileThreshold(final long largeFileThreshold) {
+        this.largeFileThreshold = largeFileThreshold;
+    }
+
+    /**
+     * Take the content of the files that did not change from the given
+     * snapshot cache instead of reading them, and store the content of the
+     * files read in the cache. The snapshot is saved once all the files have
+     * been read. The large files and the lazy files are not stored.
+     *
+     * @param snapshotCache Cache storing the content of the files, null to
+     *                      read all the files
+     */
+    public final void setSnapshotCache(final SnapshotCache snapshotCache) {
+        this.snapshotCache = snapshotCache;
+    }
+
     @Override
-    protected final List<TxtFile> doInBackground(final Void... params) {
-        List<TxtFile> txtFiles = new ArrayList<>();
-        BufferedReader br = null;
-        try {
-            for (CloudFile file : files) {
-                br = new BufferedReader(new FileReader(file.getFile()));
-                StringBuilder sb = new StringBuilder();
-                String line = br.readLine();
-                while (line != null) {
-                    sb.append(line);
-                    line = br.readLine();
-                    if (line != null) {
-                        sb.append(System.getProperty("line.separator"));
-                    }
-                }
-                String content = sb.toString();
-                TxtFile txtFile = new TxtFile(
-                        file.getName(),
-                        content,
-                        file.getFile(),
-                        file.getCreationTime(),
-                        file.getModifiedTime());
-                txtFiles.add(txtFile);
+    protected final TxtFile process(final CloudFile file) throws Exception {
+        if (file.getFile().length() > largeFileThreshold) {
+            return new LargeTxtFile(file);
+        }
+        if (lazy) {
+            return new LazyTxtFile(file, mapThreshold);
+        }
+        String content = null;
+        if (snapshotCache != null) {
+            content = snapshotCache.getText(file.getFile());
+        }
+        if (content == null) {
+            content = TxtContentReader.read(file.getFile(), mapThreshold);
+            if (snapshotCache != null) {
+                snapshotCache.putText(file.getFile(), content);
             }
+        }
+        return new TxtFile(
+                file.getName(),
+                content,
+                file.getFile(),
+                file.getCreationTime(),
+                file.getModifiedTime());
+    }
+
+    @Override
+    protected final void onProcessed() {
+        if (snapshotCache == null) {
+            return;
+        }
+        try {
+            snapshotCache.save();
         } catch (IOException e) {
-            exception = e;
-        } finally {
-            try {
-                if (br != null) {
-                    br.close();
-                }
-            } catch (IOException e) {
-                exception = e;
-            }
+            // The files will be read again next time
+            Log.e(TAG, "Cannot save snapshot", e);
         }
-        return txtFiles;
     }
 
     @Override
-    protected final void onPostExecute(final List<TxtFile> txtFiles) {
-        if (exception == null) {
-            EventBus.getDefault().post(new TxtFileReaderEvent(subscriberIds,
-                    TxtFileReaderEvent.OK, txtFiles));
-        } else {
-            EventBus.getDefault().post(new TxtFileReaderEvent(subscriberIds,
-                    TxtFileReaderEvent.ERROR, exception));
+    protected final void onComplete(final List<TxtFile> txtFiles,
+                                    final Map<CloudFile, Exception> failures) {
+        int result = TxtFileReaderEvent.OK;
+        if (!failures.isEmpty()) {
+            result = TxtFileReaderEvent.PARTIAL;
         }
+        EventBus.getDefault().post(new TxtFileReaderEvent(subscriberIds,
+                result, txtFiles, failures));
+    }
+
+    @Override
+    protected final void onError(final Exception exception,
+                                 final Map<CloudFile, Exception> failures) {
+        EventBus.getDefault().post(new TxtFileReaderEvent(subscriberIds,
+                TxtFileReaderEvent.ERROR, exception, failures));
     }
 }
@@ -1,52 +1,60 @@
 package com.alkisum.android.cloudlib.file.txt;
 
-import android.os.AsyncTask;
+import android.util.Log;
 
 import com.alkisum.android.cloudlib.events.TxtFileWriterEvent;
 import com.alkisum.android.cloudlib.file.CloudFile;
+import com.alkisum.android.cloudlib.file.CloudFileChannel;
+import com.alkisum.android.cloudlib.file.FileTask;
 
 import org.greenrobot.eventbus.EventBus;
 
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Queue;
 
 /**
- * Task writing TXT content into files.
+ * Task writing TXT content into files. The files are written in parallel.
+ * In streamed mode, no file is written, the TXT content is written by
+ * NcUploader straight into the upload requests.
  *
  * @author Alkisum
- * @version 1.3
+ * @version 1.9
  * @since 1.3
  */
-public class TxtFileWriter extends AsyncTask<Void, Void, Void> {
+public class TxtFileWriter extends FileTask<TxtFile, TxtFile> {
 
     /**
-     * Cache directory.
+     * Log tag.
      */
-    private final File cacheDir;
+    private static final String TAG = "TxtFileWriter";
 
     /**
-     * List of TXT files.
+     * Cache directory.
      */
-    private final List<TxtFile> txtFiles;
+    private final File cacheDir;
 
     /**
-     * Queue of CloudFile objects containing the TXT files to be uploaded.
+     * Subscriber ids allowed to process the events.
      */
-    private final Queue<CloudFile> cloudFiles;
+    private final Integer[] subscriberIds;
 
     /**
-     * Exception that can be set when an exception is caught during the task.
+     * Flag set to true if the TXT files are streamed to the server instead
+     * of being written into temporary files.
      */
-    private Exception exception;
+    private boolean streamed;
 
     /**
-     * Subscriber ids allowed to process the events.
+     * Channel where each file is put once written, null if the files are
+     * only given by the event.
      */
-    private final Integer[] subscriberIds;
+    private CloudFileChannel channel;
 
     /**
      * TxtFileWriter constructor.
@@ -58,45 +66,125 @@ public class TxtFileWriter extends AsyncTask<Void, Void, Void> {
     public TxtFileWriter(final File cacheDir,
                          final List<TxtFile> txtFiles,
                          final Integer[] subscriberIds) {
+        super(txtFiles);
         this.cacheDir = cacheDir;
-        this.txtFiles = txtFiles;
         this.subscriberIds = subscriberIds;
-        this.cloudFiles = new LinkedList<>();
+    }
+
+    /**
+     * Skip the temporary files: the TXT files of the event are given as they
+     * are, and NcUploader writes their content straight into the request
+     * uploading them. The temporary files are written by default.
+     *
+     * @param streamed true to stream the TXT files to the server, false to
+     *                 write them into temporary files
+     */
+    public final void setStreamed(final boolean streamed) {
+        this.streamed = streamed;
+    }
+
+    /**
+     * Put each file into the given channel as soon as it is written, for
+     * NcUploader to upload it while the next files are written. The writer
+     * waits when the channel is full, the number of files waiting for their
+     * upload is then bounded. The files are put in the order they are
+     * written, which can differ from the list order. The channel is closed
+     * once all the files are processed, or failed if none of the files can
+     * be written or if the writer is cancelled. The event is still posted at
+     * the end.
+     *
+     * @param channel Channel where to put the files, null to only give the
+     *                files with the event
+     */
+    public final void setChannel(final CloudFileChannel channel) {
+        this.channel = channel;
     }
 
     @Override
-    protected final Void doInBackground(final Void... params) {
+    protected final TxtFile process(final TxtFile txtFile) throws Exception {
+        txtFile.setStreamed(streamed);
+        if (streamed) {
+            return publish(txtFile);
+        }
 
-        try {
-            for (TxtFile txtFile : txtFiles) {
-                // Create temporary file, its name does not matter
-                File file = File.createTempFile(txtFile.getBaseName(),
-                        TxtFile.FILE_EXT, cacheDir);
+        // Create temporary file, its name does not matter
+        File file = File.createTempFile(txtFile.getBaseName(),
+                TxtFile.FILE_EXT, cacheDir);
 
-                FileWriter writer = new FileWriter(file);
-                writer.write(txtFile.getContent());
-                writer.flush();
-                writer.close();
+        try (FileWriter writer = new FileWriter(file)) {
+            writer.write(txtFile.getContent());
+        } catch (Exception e) {
+            // Do not leave the incomplete file in the cache directory
+            deleteTempFile(file);
+            throw e;
+        }
 
-                txtFile.setFile(file);
+        txtFile.setFile(file);
+        return publish(txtFile);
+    }
 
-                cloudFiles.add(txtFile);
-            }
-        } catch (IOException e) {
-            exception = e;
+    /**
+     * Delete the given temporary file, which could not be written.
+     *
+     * @param file Temporary file
+     */
+    private static void deleteTempFile(final File file) {
+        if (file.exists() && !file.delete()) {
+            Log.w(TAG, "Cannot delete " + file);
         }
+    }
 
-        return null;
+    /**
+     * Put the given file into the channel, if any.
+     *
+     * @param txtFile TXT file to publish
+     * @return Published file
+     * @throws InterruptedException The writer was interrupted while waiting
+     *                              for the channel
+     * @throws IOException          The channel is closed or has failed
+     */
+    private TxtFile publish(final TxtFile txtFile) throws InterruptedException,
+            IOException {
+        if (channel != null) {
+            channel.put(txtFile);
+        }
+        return txtFile;
+    }
+
+    @Override
+    protected final void onComplete(final List<TxtFile> txtFiles,
+                                    final Map<TxtFile, Exception> failures) {
+        // Queue of CloudFile objects containing the TXT files to be uploaded
+        Queue<CloudFile> cloudFiles = new LinkedList<>(txtFiles);
+        if (channel != null) {
+            channel.close();
+        }
+        int result = TxtFileWriterEvent.OK;
+        if (!failures.isEmpty()) {
+            result = TxtFileWriterEvent.PARTIAL;
+        }
+        EventBus.getDefault().post(new TxtFileWriterEvent(subscriberIds,
+                result, cloudFiles,
+                new LinkedHashMap<CloudFile, Exception>(failures)));
+    }
+
+    @Override
+    protected final void onError(final Exception exception,
+                                 final Map<TxtFile, Exception> failures) {
+        if (channel != null) {
+            channel.fail(exception);
+        }
+        EventBus.getDefault().post(new TxtFileWriterEvent(subscriberIds,
+                TxtFileWriterEvent.ERROR, exception,
+                new LinkedHashMap<CloudFile, Exception>(failures)));
     }
 
     @Override
-    protected final void onPostExecute(final Void param) {
-        if (exception == null) {
-            EventBus.getDefault().post(new TxtFileWriterEvent(subscriberIds,
-                    TxtFileWriterEvent.OK, cloudFiles));
-        } else {
-            EventBus.getDefault().post(new TxtFileWriterEvent(subscriberIds,
-                    TxtFileWriterEvent.ERROR, exception));
+    protected final void onCancelRequested() {
+        // Fail the channel right away, a worker waiting for a free slot
+        // would otherwise keep the task running
+        if (channel != null) {
+            channel.fail(new IOException("The writer has been cancelled"));
         }
     }
 }
@@ -0,0 +1,388 @@
+package com.alkisum.android.cloudlib.net.nextcloud;
+
+import android.util.Log;
+
+import com.alkisum.android.cloudlib.utils.IoUtils;
+import com.owncloud.android.lib.common.OwnCloudClient;
+import com.owncloud.android.lib.common.network.OnDatatransferProgressListener;
+import com.owncloud.android.lib.common.network.WebdavUtils;
+import com.owncloud.android.lib.common.operations.RemoteOperation;
+import com.owncloud.android.lib.common.operations.RemoteOperationResult;
+
+import org.apache.commons.httpclient.HttpMethod;
+import org.apache.commons.httpclient.HttpStatus;
+import org.apache.commons.httpclient.methods.PutMethod;
+import org.apache.jackrabbit.webdav.client.methods.DeleteMethod;
+import org.apache.jackrabbit.webdav.client.methods.MkColMethod;
+import org.apache.jackrabbit.webdav.client.methods.MoveMethod;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Remote operation uploading a file in chunks with the Nextcloud chunking
+ * protocol. The chunks are uploaded to a temporary collection that is then
+ * moved to the destination path, the server assembling the chunks. The number
+ * of confirmed chunks is persisted after each chunk, an interrupted upload
+ * resumes from the last confirmed chunk.
+ *
+ * @author Alkisum
+ * @version 1.9
+ * @since 1.9
+ */
+class ChunkedUploadRemoteOperation extends RemoteOperation {
+
+    /**
+     * Log tag.
+     */
+    private static final String TAG = "ChunkedUploadRemoteOp";
+
+    /**
+     * Default chunk size in bytes.
+     */
+    static final long DEFAULT_CHUNK_SIZE = 10 * 1024 * 1024;
+
+    /**
+     * Progress property for the local path.
+     */
+    private static final String PROP_LOCAL_PATH = "localPath";
+
+    /**
+     * Progress property for the remote path.
+     */
+    private static final String PROP_REMOTE_PATH = "remotePath";
+
+    /**
+     * Progress property for the file size.
+     */
+    private static final String PROP_SIZE = "size";
+
+    /**
+     * Progress property for the file modified time.
+     */
+    private static final String PROP_MODIFIED = "modified";
+
+    /**
+     * Progress property for the transfer id.
+     */
+    private static final String PROP_TRANSFER_ID = "transferId";
+
+    /**
+     * Progress property for the number of confirmed chunks.
+     */
+    private static final String PROP_CHUNKS = "chunks";
+
+    /**
+     * Local file to upload.
+     */
+    private final File localFile;
+
+    /**
+     * Remote path of the uploaded file.
+     */
+    private final String remotePath;
+
+    /**
+     * MIME type of the file.
+     */
+    private final String mimeType;
+
+    /**
+     * Chunk size in bytes.
+     */
+    private final long chunkSize;
+
+    /**
+     * File persisting the upload progress.
+     */
+    private final File progressFile;
+
+    /**
+     * Listeners notified of the transfer progress.
+     */
+    private final Set<OnDatatransferProgressListener> listeners =
+            new HashSet<>();
+
+    /**
+     * ChunkedUploadRemoteOperation constructor.
+     *
+     * @param localFile   Local file to upload
+     * @param remotePath  Remote path of the uploaded file
+     * @param mimeType    MIME type of the file
+     * @param chunkSize   Chunk size in bytes
+     * @param progressDir Directory where the upload progress is persisted
+     */
+    ChunkedUploadRemoteOperation(final File localFile, final String remotePath,
+                                 final String mimeType, final long chunkSize,
+                                 final File progressDir) {
+        this.localFile = localFile;
+        this.remotePath = remotePath;
+        this.mimeType = mimeType;
+        this.chunkSize = chunkSize;
+        // The paths are hashed, a file name cannot be shared by two uploads
+        this.progressFile = new File(progressDir, IoUtils.sha1(
+                (localFile.getAbsolutePath() + "\n" + remotePath)
+                        .getBytes(IoUtils.UTF_8)));
+    }
+
+    /**
+     * @param listener Listener to notify of the transfer progress
+     */
+    final void addDataTransferProgressListener(
+            final OnDatatransferProgressListener listener) {
+        listeners.add(listener);
+    }
+
+    @Override
+    protected final RemoteOperationResult run(final OwnCloudClient client) {
+        Properties progress = loadProgress();
+        if (progress != null) {
+            RemoteOperationResult result = upload(client,
+                    progress.getProperty(PROP_TRANSFER_ID),
+                    Integer.parseInt(progress.getProperty(PROP_CHUNKS)));
+            if (result != null) {
+                return result;
+            }
+            // The temporary collection expired on the server
+            Log.w(TAG, "Cannot resume upload of " + localFile);
+        }
+        RemoteOperationResult result = upload(client,
+                UUID.randomUUID().toString(), 0);
+        if (result == null) {
+            return new RemoteOperationResult(
+                    RemoteOperationResult.ResultCode.FILE_NOT_FOUND);
+        }
+        return result;
+    }
+
+    /**
+     * Upload the chunks starting from the given chunk and assemble the file.
+     * A temporary collection created by this call is deleted if the upload
+     * fails before its first chunk is stored, the upload cannot be resumed
+     * from it.
+     *
+     * @param client          ownCloud client
+     * @param transferId      Id of the temporary collection
+     * @param confirmedChunks Number of chunks already uploaded
+     * @return Operation result, null if the temporary collection does not
+     * exist anymore
+     */
+    private RemoteOperationResult upload(final OwnCloudClient client,
+                                         final String transferId,
+                                         final int confirmedChunks) {
+        String davUri = client.getNewWebdavUri().toString();
+        String userId = getUserId(client);
+        String uploadUri = davUri + "/uploads/"
+                + WebdavUtils.encodePath(userId) + "/" + transferId;
+        long size = localFile.length();
+        HttpMethod method = null;
+        boolean created = false;
+        boolean stored = false;
+        try {
+            if (confirmedChunks == 0) {
+                method = new MkColMethod(uploadUri);
+                if (client.executeMethod(method) != HttpStatus.SC_CREATED) {
+                    return new RemoteOperationResult(false, method);
+                }
+                method.releaseConnection();
+                created = true;
+            }
+            long chunkCount = (size + chunkSize - 1) / chunkSize;
+            for (int i = confirmedChunks; i < chunkCount; i++) {
+                long offset = i * chunkSize;
+                long length = Math.min(chunkSize, size - offset);
+                PutMethod putMethod = new PutMethod(uploadUri + "/"
+                        + getChunkName(offset, length));
+                putMethod.setRequestEntity(new FileRangeRequestEntity(
+                        localFile, offset, length, mimeType, listeners));
+                method = putMethod;
+                int status = client.executeMethod(method);
+                client.exhaustResponse(method.getResponseBodyAsStream());
+                if (status == HttpStatus.SC_NOT_FOUND && confirmedChunks > 0) {
+                    deleteProgress();
+                    return null;
+                }
+                if (status != HttpStatus.SC_CREATED
+                        && status != HttpStatus.SC_NO_CONTENT) {
+                    return new RemoteOperationResult(false, method);
+                }
+                method.releaseConnection();
+                saveProgress(transferId, i + 1);
+                stored = true;
+            }
+            method = new MoveMethod(uploadUri + "/.file", davUri + "/files/"
+                    + WebdavUtils.encodePath(userId + remotePath), true);
+            method.setRequestHeader("OC-Total-Length", Long.toString(size));
+            method.setRequestHeader("X-OC-Mtime",
+                    Long.toString(localFile.lastModified() / 1000));
+            int status = client.executeMethod(method);
+            client.exhaustResponse(method.getResponseBodyAsStream());
+            if (status == HttpStatus.SC_NOT_FOUND && confirmedChunks > 0) {
+                deleteProgress();
+                return null;
+            }
+            boolean success = status == HttpStatus.SC_CREATED
+                    || status == HttpStatus.SC_NO_CONTENT;
+            if (success) {
+                deleteProgress();
+            }
+            return new RemoteOperationResult(success, method);
+        } catch (IOException e) {
+            return new RemoteOperationResult(e);
+        } finally {
+            if (method != null) {
+                method.releaseConnection();
+            }
+            if (created && !stored) {
+                deleteCollection(client, uploadUri);
+            }
+        }
+    }
+
+    /**
+     * Get the id of the user owning the upload collections, which can differ
+     * from the login name, for example with an e-mail or LDAP login.
+     *
+     * @param client ownCloud client
+     * @return User id, the login name if the client has no user id
+     */
+    private static String getUserId(final OwnCloudClient client) {
+        String userId = client.getUserId();
+        if (userId == null || userId.isEmpty()) {
+            userId = client.getCredentials().getUsername();
+        }
+        return userId;
+    }
+
+    /**
+     * Delete the given temporary collection. A failed deletion is only
+     * logged, the server expires the collection anyway.
+     *
+     * @param client    ownCloud client
+     * @param uploadUri URI of the temporary collection
+     */
+    private static void deleteCollection(final OwnCloudClient client,
+                                         final String uploadUri) {
+        DeleteMethod deleteMethod = new DeleteMethod(uploadUri);
+        try {
+            int status = client.executeMethod(deleteMethod);
+            client.exhaustResponse(deleteMethod.getResponseBodyAsStream());
+            if (status != HttpStatus.SC_NO_CONTENT
+                    && status != HttpStatus.SC_NOT_FOUND) {
+                Log.w(TAG, "Cannot delete " + uploadUri + ": " + status);
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "Cannot delete " + uploadUri, e);
+        } finally {
+            deleteMethod.releaseConnection();
+        }
+    }
+
+    /**
+     * Build the chunk name from its range, the server assembles the chunks in
+     * the alphabetical order of their names.
+     *
+     * @param offset Position of the first byte of the chunk
+     * @param length Chunk length
+     * @return Chunk name
+     */
+    private static String getChunkName(final long offset, final long length) {
+        return String.format(Locale.US, "%015d-%015d", offset,
+                offset + length - 1);
+    }
+
+    /**
+     * Load the progress persisted by a previous upload of the same file. A
+     * progress that cannot be read, that is invalid or that belongs to a
+     * previous version of the local file is deleted, the file is then
+     * uploaded from scratch.
+     *
+     * @return Progress, null if there is no valid progress
+     */
+    private Properties loadProgress() {
+        if (!progressFile.exists()) {
+            return null;
+        }
+        Properties progress = new Properties();
+        try (InputStream in = new FileInputStream(progressFile)) {
+            progress.load(in);
+        } catch (IOException | IllegalArgumentException e) {
+            // IllegalArgumentException is thrown on a malformed escape
+            Log.e(TAG, "Cannot read upload progress", e);
+            deleteProgress();
+            return null;
+        }
+        if (!localFile.getAbsolutePath().equals(
+                progress.getProperty(PROP_LOCAL_PATH))
+                || !remotePath.equals(progress.getProperty(PROP_REMOTE_PATH))
+                || !Long.toString(localFile.length()).equals(
+                progress.getProperty(PROP_SIZE))
+                || !Long.toString(localFile.lastModified()).equals(
+                progress.getProperty(PROP_MODIFIED))
+                || progress.getProperty(PROP_TRANSFER_ID) == null
+                || !isValidChunkCount(progress.getProperty(PROP_CHUNKS))) {
+            Log.w(TAG, "Discarding upload progress of " + localFile);
+            deleteProgress();
+            return null;
+        }
+        return progress;
+    }
+
+    /**
+     * @param chunks Number of confirmed chunks read from the progress
+     * @return true if the number is a chunk count of the local file from
+     * which the upload can be resumed
+     */
+    private boolean isValidChunkCount(final String chunks) {
+        if (chunks == null) {
+            return false;
+        }
+        try {
+            int count = Integer.parseInt(chunks);
+            long chunkCount = (localFile.length() + chunkSize - 1) / chunkSize;
+            return count > 0 && count <= chunkCount;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Persist the upload progress.
+     *
+     * @param transferId      Id of the temporary collection
+     * @param confirmedChunks Number of chunks uploaded
+     * @throws IOException An error occurred while writing the progress
+     */
+    private void saveProgress(final String transferId,
+                              final int confirmedChunks) throws IOException {
+        Properties progress = new Properties();
+        progress.setProperty(PROP_LOCAL_PATH, localFile.getAbsolutePath());
+        progress.setProperty(PROP_REMOTE_PATH, remotePath);
+        progress.setProperty(PROP_SIZE, Long.toString(localFile.length()));
+        progress.setProperty(PROP_MODIFIED,
+                Long.toString(localFile.lastModified()));
+        progress.setProperty(PROP_TRANSFER_ID, transferId);
+        progress.setProperty(PROP_CHUNKS, Integer.toString(confirmedChunks));
+        File parent = progressFile.getParentFile();
+        if (parent != null && !parent.exists() && !parent.mkdirs()) {
+            throw new IOException("Cannot create " + parent);
+        }
+        IoUtils.write(progressFile, out -> progress.store(out, null));
+    }
+
+    /**
+     * Delete the persisted upload progress.
+     */
+    private void deleteProgress() {
+        if (progressFile.exists() && !progressFile.delete()) {
+            Log.w(TAG, "Cannot delete " + progressFile);
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.alkisum.android.cloudlib.net.nextcloud;
+
+import com.owncloud.android.lib.common.network.OnDatatransferProgressListener;
+
+import org.apache.commons.httpclient.methods.RequestEntity;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.util.Set;
+
+/**
+ * Request entity sending a range of a file.
+ *
+ * @author Alkisum
+ * @version 1.9
+ * @since 1.9
+ */
+class FileRangeRequestEntity implements RequestEntity {
+
+    /**
+     * Size of the buffer used to read the file.
+     */
+    private static final int BUFFER_SIZE = 8192;
+
+    /**
+     * File to send.
+     */
+    private final File file;
+
+    /**
+     * Position of the first byte to send.
+     */
+    private final long offset;
+
+    /**
+     * Number of bytes to send.
+     */
+    private final long length;
+
+    /**
+     * MIME type of the file.
+     */
+    private final String mimeType;
+
+    /**
+     * Listeners notified of the transfer progress over the whole file.
+     */
+    private final Set<OnDatatransferProgressListener> listeners;
+
+    /**
+     * FileRangeRequestEntity constructor.
+     *
+     * @param file      File to send
+     * @param offset    Position of the first byte to send
+     * @param length    Number of bytes to send
+     * @param mimeType  MIME type of the file
+     * @param listeners Listeners notified of the transfer progress over the
+     *                  whole file
+     */
+    FileRangeRequestEntity(final File file, final long offset,
+                           final long length, final String mimeType,
+                           final Set<OnDatatransferProgressListener> listeners) {
+        this.file = file;
+        this.offset = offset;
+        this.length = length;
+        this.mimeType = mimeType;
+        this.listeners = listeners;
+    }
+
+    @Override
+    public final boolean isRepeatable() {
+        return true;
+    }
+
+    @Override
+    public final void writeRequest(final OutputStream out) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            raf.seek(offset);
+            byte[] buffer = new byte[BUFFER_SIZE];
+            long written = 0;
+            while (written < length) {
+                int read = raf.read(buffer, 0,
+                        (int) Math.min(buffer.length, length - written));
+                if (read == -1) {
+                    throw new IOException("Unexpected end of " + file);
+                }
+                out.write(buffer, 0, read);
+                written += read;
+                for (OnDatatransferProgressListener listener : listeners) {
+                    listener.onTransferProgress(read, offset + written,
+                            file.length(), file.getAbsolutePath());
+                }
+            }
+        }
+    }
+
+    @Override
+    public final long getContentLength() {
+        return length;
+    }
+
+    @Override
+    public final String getContentType() {
+        return mimeType;
+    }
+}
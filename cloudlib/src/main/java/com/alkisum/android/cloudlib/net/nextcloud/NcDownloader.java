@@ -2,35 +2,36 @@ package com.alkisum.android.cloudlib.net.nextcloud;
 
 import android.content.Context;
 import android.content.Intent;
-import android.os.Handler;
 import android.util.Log;
 
 import com.alkisum.android.cloudlib.R;
+import com.alkisum.android.cloudlib.cache.DiskCache;
 import com.alkisum.android.cloudlib.events.DownloadEvent;
 import com.alkisum.android.cloudlib.file.CloudFile;
+import com.alkisum.android.cloudlib.file.CloudFileParser;
 import com.alkisum.android.cloudlib.utils.OcUtils;
 import com.owncloud.android.lib.common.network.OnDatatransferProgressListener;
 import com.owncloud.android.lib.common.operations.OnRemoteOperationListener;
 import com.owncloud.android.lib.common.operations.RemoteOperation;
 import com.owncloud.android.lib.common.operations.RemoteOperationResult;
-import com.owncloud.android.lib.resources.files.DownloadFileRemoteOperation;
 import com.owncloud.android.lib.resources.files.FileUtils;
 import com.owncloud.android.lib.resources.files.ReadFolderRemoteOperation;
 import com.owncloud.android.lib.resources.files.model.RemoteFile;
 
-import org.greenrobot.eventbus.EventBus;
-
 import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.Queue;
+import java.util.Map;
 
 /**
  * Class downloading files from an Nextcloud server.
  *
  * @author Alkisum
- * @version 1.8
+ * @version 1.9
  * @since 1.0
  */
 public class NcDownloader extends NcOperator implements
@@ -52,12 +53,58 @@ public class NcDownloader extends NcOperator implements
     private String remotePath;
 
     /**
-     * Queue of remote files to download.
+     * Flag set to true if the files of the subfolders are downloaded too.
+     */
+    private boolean recursive;
+
+    /**
+     * Flag set to true if the listing is parsed as a stream, the files being
+     * downloaded while the remote files are still being listed.
+     */
+    private boolean streamListing;
+
+    /**
+     * Operation listing the remote files of the current batch.
+     */
+    private RemoteOperation listingOperation;
+
+    /**
+     * Flag set to true when all the remote files have been listed.
+     */
+    private boolean listingFinished;
+
+    /**
+     * Remote paths of the listed files matching the extensions, used to find
+     * the files removed since the previous synchronisation.
+     */
+    private List<String> listedPaths;
+
+    /**
+     * Indexes in the scheduled files of the files waiting to be downloaded.
+     */
+    private Deque<Integer> pendingIndexes;
+
+    /**
+     * Index in the scheduled files of the file downloaded by each running
+     * operation.
+     */
+    private Map<RemoteOperation, Integer> operationIndexes;
+
+    /**
+     * Number of retries already done for the scheduled files, the keys are
+     * the indexes in the scheduled files.
+     */
+    private Map<Integer, Integer> retryCounts;
+
+    /**
+     * Maximum number of times a failed download is retried before the batch
+     * is aborted.
      */
-    private Queue<RemoteFile> remoteFiles;
+    private int maxRetries;
 
     /**
-     * List of downloaded files to be read.
+     * List of downloaded files to be read, in the same order as the scheduled
+     * files.
      */
     private List<CloudFile> cloudFiles;
 
@@ -66,15 +113,65 @@ public class NcDownloader extends NcOperator implements
      */
     private List<String> excludeFileNames;
 
+    /**
+     * File storing the manifest used by the incremental mode, null if the
+     * incremental mode is disabled.
+     */
+    private File manifestFile;
+
+    /**
+     * Manifest of the files downloaded during the previous synchronisations.
+     */
+    private SyncManifest manifest;
+
+    /**
+     * Remote files to download, null until the listing starts.
+     */
+    private List<RemoteFile> scheduledFiles;
+
+    /**
+     * Remote paths of the files removed since the previous synchronisation.
+     */
+    private List<String> removedPaths;
+
     /**
      * Number of files to download.
      */
     private int totalRemoteFiles;
 
     /**
-     * EventBus instance.
+     * Number of files downloaded so far.
+     */
+    private int downloadedRemoteFiles;
+
+    /**
+     * Disk cache storing the downloaded files, null if the files are
+     * downloaded to the cache directory of the application.
+     */
+    private DiskCache diskCache;
+
+    /**
+     * Parser converting the downloaded files, null if the files are not
+     * parsed.
+     */
+    private CloudFileParser parser;
+
+    /**
+     * Size in bytes up to which the files are parsed without being written
+     * to disk.
      */
-    private final EventBus eventBus = EventBus.getDefault();
+    private long inMemoryThreshold = -1;
+
+    /**
+     * Maximum number of download operations running at the same time.
+     */
+    private int maxParallelDownloads = 1;
+
+    /**
+     * Flag set to true when an operation failed, the batch is then stopped
+     * until it is resumed.
+     */
+    private boolean failed;
 
     /**
      * Extensions of files to download.
@@ -123,39 +220,204 @@ public class NcDownloader extends NcOperator implements
         this.excludeFileNames = excludeFileNames;
     }
 
+    /**
+     * Download the files of all the subfolders of the remote path as well.
+     * The whole tree is listed with a single request when the server allows
+     * it, the folders are read in parallel otherwise. The downloaded files
+     * keep the directory structure of the remote path in the cache directory.
+     * A manifest file of the incremental mode must not be shared between the
+     * recursive and the non-recursive modes.
+     *
+     * @param recursive true to download the files of the subfolders, false to
+     *                  download the files of the remote path only
+     */
+    public final void setRecursive(final boolean recursive) {
+        this.recursive = recursive;
+    }
+
+    /**
+     * Parse the listing of the remote files as a stream. Each matching file
+     * is scheduled as soon as its entry is parsed, the first downloads start
+     * while the remote files are still being listed and the whole listing is
+     * never held in memory. This is useful for folders containing a very large
+     * number of files. The LISTED event is then posted once the listing is
+     * finished, after the DOWNLOADING events of the files already downloaded.
+     *
+     * @param streamListing true to parse the listing as a stream
+     */
+    public final void setStreamListing(final boolean streamListing) {
+        this.streamListing = streamListing;
+    }
+
+    /**
+     * Enable the incremental mode. The metadata (ETag, modified timestamp and
+     * size) of the downloaded files is stored in the given manifest file, and
+     * the files whose metadata did not change since the previous download are
+     * skipped. The DownloadEvent then reports the files added, changed and
+     * removed since the previous download. The manifest should be dedicated
+     * to one remote path.
+     *
+     * @param manifestFile File storing the manifest, null to disable the
+     *                     incremental mode
+     */
+    public final void setManifestFile(final File manifestFile) {
+        this.manifestFile = manifestFile;
+    }
+
+    /**
+     * Set the maximum number of files downloaded at the same time. The
+     * default value is 1, the files are then downloaded one after the other.
+     * The connection manager of the Nextcloud library limits the number of
+     * connections per host, a value between 4 and 8 is usually enough.
+     *
+     * @param maxParallelDownloads Maximum number of parallel downloads
+     */
+    public final void setMaxParallelDownloads(final int maxParallelDownloads) {
+        if (maxParallelDownloads < 1) {
+            throw new IllegalArgumentException(
+                    "At least one download must be allowed");
+        }
+        this.maxParallelDownloads = maxParallelDownloads;
+    }
+
+    /**
+     * Download the files to the given disk cache instead of the cache
+     * directory of the application. The files whose cached copy has the same
+     * ETag as the remote file are not downloaded again. The cache budget
+     * should be larger than the files of a batch, the files returned by the
+     * events belong to the cache and must not be deleted. When a disk cache is
+     * set, all the files are written to disk, even the files that the parser
+     * could parse from the response body.
+     *
+     * @param diskCache Disk cache, null to download the files to the cache
+     *                  directory of the application
+     */
+    public final void setDiskCache(final DiskCache diskCache) {
+        this.diskCache = diskCache;
+    }
+
+    /**
+     * Parse each downloaded file as soon as it is downloaded, on the
+     * operation thread, for example with a JsonFileParser or a TxtFileParser.
+     * The parsed file objects replace the downloaded files in the events. The
+     * files whose size does not exceed the given threshold are parsed
+     * straight from the response body and are not written to disk, their file
+     * object is then null.
+     *
+     * @param fileParser Parser converting the downloaded files, null to
+     *                   disable parsing
+     * @param threshold  Size in bytes up to which the files are not written to
+     *                   disk, -1 to write all files to disk
+     */
+    public final void setParser(final CloudFileParser fileParser,
+                                final long threshold) {
+        this.parser = fileParser;
+        this.inMemoryThreshold = threshold;
+    }
+
+    /**
+     * Set the number of times a failed download is retried before the batch
+     * is aborted. The retries resume the partially downloaded file. The
+     * default value is 0.
+     *
+     * @param maxRetries Maximum number of retries per file
+     */
+    public final void setMaxRetries(final int maxRetries) {
+        this.maxRetries = maxRetries;
+    }
+
     /**
      * Start the process. Get the remote files to download.
+     * <p>
+     * Once the remote files are listed, a LISTED event gives the files that
+     * are going to be downloaded. Each file is then delivered with a
+     * DOWNLOADING event as soon as it is downloaded (and parsed if a parser is
+     * set), in completion order, and a final OK event gives all the files.
      */
     public final void start() {
-        getRemoteFiles();
+        runOnHandler(() -> {
+            failed = false;
+            listingFinished = false;
+            // Drop the state of the previous batch right away, its pending
+            // downloads are then ignored when they finish
+            startListing();
+            getRemoteFiles();
+        });
+    }
+
+    /**
+     * Resume the process after an ERROR event. The files that were not
+     * downloaded yet are downloaded without listing the remote files again,
+     * starting with the file that failed, whose partial content is resumed.
+     * The process is started from scratch if the listing did not finish.
+     */
+    public final void resume() {
+        runOnHandler(() -> {
+            if (!failed) {
+                return;
+            }
+            if (!listingFinished) {
+                start();
+                return;
+            }
+            failed = false;
+            retryCounts.clear();
+            getNotifier().setIcon(android.R.drawable.stat_sys_download);
+            getNotifier().setAutoCancel(false);
+            if (downloadedRemoteFiles < totalRemoteFiles) {
+                downloadNextFiles();
+            } else {
+                onDownloadComplete();
+            }
+        });
     }
 
     /**
-     * List all remote files contained in the remote path directory.
+     * List all remote files contained in the remote path directory, and in
+     * its subfolders in recursive mode.
      */
     private void getRemoteFiles() {
-        ReadFolderRemoteOperation readOperation =
-                new ReadFolderRemoteOperation(remotePath);
+        RemoteOperation readOperation;
+        if (streamListing) {
+            readOperation = new StreamingReadFolderRemoteOperation(remotePath,
+                    recursive, getHandler(), this::onRemoteFileListed);
+        } else if (recursive) {
+            readOperation = new ReadTreeRemoteOperation(remotePath,
+                    maxParallelDownloads);
+        } else {
+            readOperation = new ReadFolderRemoteOperation(remotePath);
+        }
+        listingOperation = readOperation;
         readOperation.execute(getClient(), this, getHandler());
     }
 
     /**
-     * Download the given remote file.
+     * Download the scheduled file at the given index.
      *
-     * @param file Remote file
+     * @param index Index in the scheduled files
      */
-    private void download(final RemoteFile file) {
-        CloudFile cloudFile = new CloudFile(
-                OcUtils.getRemoteFileName(file),
-                new File(getContext().getCacheDir(), file.getRemotePath()),
-                file.getCreationTimestamp(),
-                file.getModifiedTimestamp());
-        cloudFiles.add(cloudFile);
-
-        DownloadFileRemoteOperation downloadOperation =
-                new DownloadFileRemoteOperation(file.getRemotePath(),
-                        getContext().getCacheDir().getAbsolutePath());
+    private void download(final int index) {
+        RemoteFile file = scheduledFiles.get(index);
+        CloudFile cloudFile = cloudFiles.get(index);
+        ResumableDownloadRemoteOperation downloadOperation =
+                new ResumableDownloadRemoteOperation(file.getRemotePath(),
+                        file.getEtag(), cloudFile.getFile());
         downloadOperation.addDatatransferProgressListener(this);
+        if (diskCache != null) {
+            downloadOperation.setUpToDate(diskCache.get(file.getRemotePath(),
+                    cloudFile.getName(), file.getEtag()) != null);
+        }
+        if (parser != null) {
+            if (diskCache == null && file.getLength() <= inMemoryThreshold) {
+                downloadOperation.setParser(parser, new CloudFile(
+                        cloudFile.getName(), null,
+                        cloudFile.getCreationTime(),
+                        cloudFile.getModifiedTime()), true);
+            } else {
+                downloadOperation.setParser(parser, cloudFile, false);
+            }
+        }
+        operationIndexes.put(downloadOperation, index);
         downloadOperation.execute(getClient(), this, getHandler());
     }
 
@@ -170,34 +432,50 @@ public class NcDownloader extends NcOperator implements
         } else {
             percentage = 0;
         }
-        getNotifier().setTitle(getContext().getString(
-                R.string.downloader_downloading) + fileName);
-        getNotifier().setProgress(percentage);
-        getNotifier().show();
+        showProgress(getContext().getString(
+                R.string.downloader_downloading) + fileName, percentage);
     }
 
     @Override
     public final void onRemoteOperationFinish(
             final RemoteOperation operation,
             final RemoteOperationResult result) {
-        if (result.isSuccess()) {
-            if (operation instanceof ReadFolderRemoteOperation) {
+        if (operation instanceof ResumableDownloadRemoteOperation) {
+            onDownloadRemoteFileFinish(operation, result);
+        } else if (operation != listingOperation) {
+            // Operation started by a previous batch
+            return;
+        } else if (result.isSuccess()) {
+            if (operation instanceof StreamingReadFolderRemoteOperation) {
+                onListingFinished();
+            } else {
                 onReadRemoteFolderFinish(result);
-            } else if (operation instanceof DownloadFileRemoteOperation) {
-                onDownloadRemoteFileFinish();
             }
-        } else {
-            getNotifier().setIcon(
-                    android.R.drawable.stat_sys_download_done);
-            getNotifier().setAutoCancel(true);
-            getNotifier().setTitle(getContext().getString(
-                    R.string.downloader_failed));
-            getNotifier().setProgress(100);
-            getNotifier().show();
-            Log.e(TAG, result.getLogMessage(), result.getException());
-            eventBus.post(new DownloadEvent(subscriberIds, DownloadEvent.ERROR,
-                    result.getLogMessage()));
+        } else if (!failed) {
+            onOperationFailed(result);
+        }
+    }
+
+    /**
+     * Abort the batch after an operation failed.
+     *
+     * @param result Result of the failed operation
+     */
+    private void onOperationFailed(final RemoteOperationResult result) {
+        failed = true;
+        if (diskCache != null) {
+            diskCache.flush();
         }
+        getNotifier().setIcon(
+                android.R.drawable.stat_sys_download_done);
+        getNotifier().setAutoCancel(true);
+        getNotifier().setTitle(getContext().getString(
+                R.string.downloader_failed));
+        getNotifier().setProgress(100);
+        getNotifier().show();
+        Log.e(TAG, result.getLogMessage(), result.getException());
+        post(new DownloadEvent(subscriberIds, DownloadEvent.ERROR,
+                result.getLogMessage()));
     }
 
     /**
@@ -206,55 +484,258 @@ public class NcDownloader extends NcOperator implements
      * @param result Operation result
      */
     private void onReadRemoteFolderFinish(final RemoteOperationResult result) {
-        remoteFiles = new LinkedList<>();
-        cloudFiles = new ArrayList<>();
         for (Object obj : result.getData()) {
-            RemoteFile remoteFile = (RemoteFile) obj;
-            String fileName = OcUtils.getRemoteFileName(remoteFile);
-            for (String fileExt : fileExtensions) {
-                if (fileName.endsWith(fileExt)
-                        && (excludeFileNames == null
-                        || !excludeFileNames.contains(fileName))) {
-                    remoteFiles.add(remoteFile);
+            addListedFile((RemoteFile) obj);
+        }
+        onListingFinished();
+    }
+
+    /**
+     * Called on the handler thread when a remote file is listed by the
+     * streaming operation. The file is downloaded right away if it matches.
+     *
+     * @param operation  Operation listing the file
+     * @param remoteFile Listed file
+     */
+    private void onRemoteFileListed(final RemoteOperation operation,
+                                    final RemoteFile remoteFile) {
+        if (operation != listingOperation) {
+            // Operation started by a previous batch
+            return;
+        }
+        int scheduled = totalRemoteFiles;
+        addListedFile(remoteFile);
+        if (totalRemoteFiles > scheduled && !failed) {
+            getNotifier().setText(downloadedRemoteFiles + "/"
+                    + totalRemoteFiles);
+            downloadNextFiles();
+        }
+    }
+
+    /**
+     * Prepare the batch before the remote files are listed.
+     */
+    private void startListing() {
+        manifest = null;
+        if (manifestFile != null) {
+            manifest = SyncManifest.load(manifestFile);
+        }
+        listedPaths = new ArrayList<>();
+        scheduledFiles = new ArrayList<>();
+        cloudFiles = new ArrayList<>();
+        pendingIndexes = new LinkedList<>();
+        operationIndexes = new HashMap<>();
+        retryCounts = new HashMap<>();
+        totalRemoteFiles = 0;
+        downloadedRemoteFiles = 0;
+    }
+
+    /**
+     * Schedule the download of the given listed file if it matches the
+     * extensions and, in incremental mode, if it changed since the previous
+     * download.
+     *
+     * @param remoteFile Listed file
+     */
+    private void addListedFile(final RemoteFile remoteFile) {
+        String fileName = OcUtils.getRemoteFileName(remoteFile);
+        for (String fileExt : fileExtensions) {
+            if (fileName.endsWith(fileExt)
+                    && (excludeFileNames == null
+                    || !excludeFileNames.contains(fileName))) {
+                listedPaths.add(remoteFile.getRemotePath());
+                if (manifest == null || !manifest.isUnchanged(remoteFile)) {
+                    scheduleFile(remoteFile, fileName);
                 }
+                return;
             }
         }
-        totalRemoteFiles = remoteFiles.size();
-        RemoteFile remoteFile = remoteFiles.poll();
-        if (remoteFile != null) {
-            getNotifier().setText((totalRemoteFiles - remoteFiles.size())
-                    + "/" + totalRemoteFiles);
-            download(remoteFile);
+    }
+
+    /**
+     * Schedule the download of the given remote file.
+     *
+     * @param file     Remote file to download
+     * @param fileName File name
+     */
+    private void scheduleFile(final RemoteFile file, final String fileName) {
+        File localFile;
+        if (diskCache != null) {
+            localFile = diskCache.getFile(file.getRemotePath(), fileName);
+        } else {
+            localFile = new File(getContext().getCacheDir(),
+                    file.getRemotePath());
+        }
+        pendingIndexes.add(cloudFiles.size());
+        scheduledFiles.add(file);
+        cloudFiles.add(new CloudFile(
+                fileName,
+                localFile,
+                file.getCreationTimestamp(),
+                file.getModifiedTimestamp()));
+        totalRemoteFiles++;
+    }
+
+    /**
+     * Called when all the remote files have been listed.
+     */
+    private void onListingFinished() {
+        listingFinished = true;
+        if (manifest != null) {
+            removedPaths = manifest.getRemotePaths(remotePath);
+            removedPaths.removeAll(listedPaths);
+        }
+        listedPaths = null;
+        if (failed) {
+            return;
+        }
+        if (totalRemoteFiles > 0) {
+            getNotifier().setText(downloadedRemoteFiles + "/"
+                    + totalRemoteFiles);
+            post(new DownloadEvent(subscriberIds,
+                    DownloadEvent.LISTED, new ArrayList<>(cloudFiles)));
+            if (downloadedRemoteFiles < totalRemoteFiles) {
+                downloadNextFiles();
+            } else {
+                onAllFilesDownloaded();
+            }
+        } else if (manifest != null && !removedPaths.isEmpty()) {
+            onDownloadComplete();
         } else {
-            eventBus.post(new DownloadEvent(subscriberIds,
+            post(new DownloadEvent(subscriberIds,
                     DownloadEvent.NO_FILE));
         }
     }
 
     /**
-     * Called when the download remote file operation is finished.
+     * Start downloading the queued files until the maximum number of parallel
+     * downloads is reached.
      */
-    private void onDownloadRemoteFileFinish() {
-        RemoteFile remoteFile = remoteFiles.poll();
-        if (remoteFile != null) {
-            getNotifier().setText((totalRemoteFiles - remoteFiles.size())
-                    + "/" + totalRemoteFiles);
-            download(remoteFile);
-            eventBus.post(new DownloadEvent(subscriberIds,
-                    DownloadEvent.DOWNLOADING));
+    private void downloadNextFiles() {
+        while (operationIndexes.size() < maxParallelDownloads) {
+            Integer index = pendingIndexes.poll();
+            if (index == null) {
+                return;
+            }
+            download(index);
+        }
+    }
+
+    /**
+     * Called when the download remote file operation is finished. The
+     * operations can finish in any order when several files are downloaded
+     * in parallel, each file is delivered as soon as it is downloaded and the
+     * batch is complete when every file has been downloaded.
+     * A failed download is retried until the maximum number of retries is
+     * reached, the batch is then aborted and the file is kept at the head of
+     * the queue to be resumed first.
+     *
+     * @param operation Finished operation
+     * @param result    Operation result
+     */
+    private void onDownloadRemoteFileFinish(final RemoteOperation operation,
+                                            final RemoteOperationResult result) {
+        Integer index = operationIndexes.remove(operation);
+        if (index == null) {
+            // Operation started by a previous batch
+            return;
+        }
+        if (!result.isSuccess()) {
+            pendingIndexes.addFirst(index);
+            if (failed) {
+                return;
+            }
+            Integer retryCount = retryCounts.get(index);
+            if (retryCount == null) {
+                retryCount = 0;
+            }
+            if (retryCount < maxRetries) {
+                Log.w(TAG, "Retrying download: " + result.getLogMessage());
+                retryCounts.put(index, retryCount + 1);
+                downloadNextFiles();
+            } else {
+                onOperationFailed(result);
+            }
+            return;
+        }
+        downloadedRemoteFiles++;
+        ResumableDownloadRemoteOperation downloadOperation =
+                (ResumableDownloadRemoteOperation) operation;
+        if (diskCache != null && !downloadOperation.isUpToDate()) {
+            RemoteFile remoteFile = scheduledFiles.get(index);
+            diskCache.put(remoteFile.getRemotePath(),
+                    OcUtils.getRemoteFileName(remoteFile),
+                    remoteFile.getEtag());
+        }
+        CloudFile parsedFile = downloadOperation.getParsedFile();
+        if (parsedFile != null) {
+            cloudFiles.set(index, parsedFile);
+        }
+        if (failed) {
+            // Keep track of the file, resume() will not download it again
+            return;
+        }
+        getNotifier().setText(downloadedRemoteFiles + "/" + totalRemoteFiles);
+        post(new DownloadEvent(subscriberIds,
+                DownloadEvent.DOWNLOADING, cloudFiles.get(index)));
+        if (!listingFinished || downloadedRemoteFiles < totalRemoteFiles) {
+            downloadNextFiles();
         } else {
-            new Handler().postDelayed(() -> {
-                getNotifier().setIcon(
-                        android.R.drawable.stat_sys_download_done);
-                getNotifier().setAutoCancel(true);
-                getNotifier().setTitle(getContext().getString(
-                        R.string.downloader_complete));
-                getNotifier().setProgress(100);
-                getNotifier().show();
-            }, 100);
-            eventBus.post(new DownloadEvent(subscriberIds, DownloadEvent.OK,
+            onAllFilesDownloaded();
+        }
+    }
+
+    /**
+     * Called when all the scheduled files have been downloaded.
+     */
+    private void onAllFilesDownloaded() {
+        getHandler().postDelayed(() -> {
+            getNotifier().setIcon(
+                    android.R.drawable.stat_sys_download_done);
+            getNotifier().setAutoCancel(true);
+            getNotifier().setTitle(getContext().getString(
+                    R.string.downloader_complete));
+            getNotifier().setProgress(100);
+            getNotifier().show();
+        }, 100);
+        onDownloadComplete();
+    }
+
+    /**
+     * Called when all the files have been downloaded. Update the manifest
+     * when the incremental mode is enabled and post the OK event.
+     */
+    private void onDownloadComplete() {
+        if (diskCache != null) {
+            diskCache.flush();
+        }
+        if (manifest == null) {
+            post(new DownloadEvent(subscriberIds, DownloadEvent.OK,
                     cloudFiles));
+            return;
+        }
+        List<CloudFile> addedFiles = new ArrayList<>();
+        List<CloudFile> changedFiles = new ArrayList<>();
+        for (int i = 0; i < scheduledFiles.size(); i++) {
+            RemoteFile remoteFile = scheduledFiles.get(i);
+            if (manifest.contains(remoteFile.getRemotePath())) {
+                changedFiles.add(cloudFiles.get(i));
+            } else {
+                addedFiles.add(cloudFiles.get(i));
+            }
+            manifest.put(remoteFile);
+        }
+        for (String removedPath : removedPaths) {
+            manifest.remove(removedPath);
+        }
+        try {
+            manifest.save();
+        } catch (IOException e) {
+            // The next download will fetch the files again
+            Log.e(TAG, "Cannot save manifest", e);
         }
+        post(new DownloadEvent(subscriberIds, DownloadEvent.OK,
+                cloudFiles, addedFiles, changedFiles, removedPaths));
     }
 
     /**
@@ -2,19 +2,19 @@ package com.alkisum.android.cloudlib.net.nextcloud;
 
 import android.content.Context;
 import android.content.Intent;
-import android.net.Uri;
 import android.os.Handler;
+import android.os.Looper;
 
 import com.alkisum.android.cloudlib.utils.Notifier;
 import com.owncloud.android.lib.common.OwnCloudClient;
-import com.owncloud.android.lib.common.OwnCloudClientFactory;
-import com.owncloud.android.lib.common.OwnCloudCredentialsFactory;
+
+import org.greenrobot.eventbus.EventBus;
 
 /**
  * Base class for ownCloud operations.
  *
  * @author Alkisum
- * @version 1.3
+ * @version 1.9
  * @since 1.2
  */
 class NcOperator {
@@ -32,7 +32,23 @@ class NcOperator {
     /**
      * Handler for the operation on the ownCloud server.
      */
-    private final Handler handler;
+    private Handler handler;
+
+    /**
+     * Handler of the thread that created the operator, used to post the
+     * events.
+     */
+    private final Handler eventHandler;
+
+    /**
+     * Title of the progress notification last shown.
+     */
+    private String progressTitle;
+
+    /**
+     * Percentage of the progress notification last shown.
+     */
+    private int progressPercentage = -1;
 
     /**
      * Notifier instance to show notification when doing operations.
@@ -52,7 +68,8 @@ class NcOperator {
                final String channelId, final String channelName,
                final int icon) {
         this.context = context;
-        this.handler = new Handler();
+        this.eventHandler = new Handler();
+        this.handler = eventHandler;
 
         notifier = new Notifier(context, channelId, channelName);
         if (intent != null) {
@@ -62,7 +79,8 @@ class NcOperator {
     }
 
     /**
-     * Initialize ownCloud client with given information.
+     * Initialize ownCloud client with given information. The client is shared
+     * with the other operators connecting to the same account.
      *
      * @param address  Server address
      * @param username Username
@@ -70,11 +88,72 @@ class NcOperator {
      */
     final void init(final String address, final String username,
                     final String password) {
-        Uri serverUri = Uri.parse(address);
-        client = OwnCloudClientFactory.createOwnCloudClient(
-                serverUri, context, true);
-        client.setCredentials(OwnCloudCredentialsFactory.newBasicCredentials(
-                username, password));
+        client = NcSessions.getClient(context, address, username, password);
+    }
+
+    /**
+     * Process the results of the operations on the thread of the given
+     * looper, for example the looper of a HandlerThread, instead of the
+     * thread that created the operator, which is usually the main thread.
+     * The events are still posted on the thread that created the operator.
+     * This must be called before starting the operator.
+     *
+     * @param looper Looper of the thread processing the results, null to
+     *               process them on the thread that created the operator
+     */
+    public final void setCallbackLooper(final Looper looper) {
+        if (looper == null) {
+            handler = eventHandler;
+        } else {
+            handler = new Handler(looper);
+        }
+    }
+
+    /**
+     * Run the given task on the thread processing the results of the
+     * operations, right away if called from that thread.
+     *
+     * @param task Task to run
+     */
+    final void runOnHandler(final Runnable task) {
+        if (Looper.myLooper() == handler.getLooper()) {
+            task.run();
+        } else {
+            handler.post(task);
+        }
+    }
+
+    /**
+     * Post the given event on the thread that created the operator.
+     *
+     * @param event Event to post
+     */
+    final void post(final Object event) {
+        if (handler == eventHandler) {
+            EventBus.getDefault().post(event);
+        } else {
+            eventHandler.post(() -> EventBus.getDefault().post(event));
+        }
+    }
+
+    /**
+     * Show the progress notification, unless the same progress is already
+     * shown. The transfer listeners are called for each buffer sent or
+     * received, from several threads when transfers run in parallel.
+     *
+     * @param title      Notification title
+     * @param percentage Progress percentage
+     */
+    final synchronized void showProgress(final String title,
+                                         final int percentage) {
+        if (percentage == progressPercentage && title.equals(progressTitle)) {
+            return;
+        }
+        progressTitle = title;
+        progressPercentage = percentage;
+        notifier.setTitle(title);
+        notifier.setProgress(percentage);
+        notifier.show();
     }
 
     /**
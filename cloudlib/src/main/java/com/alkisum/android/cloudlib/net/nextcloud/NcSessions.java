@@ -0,0 +1,155 @@
+package com.alkisum.android.cloudlib.net.nextcloud;
+
+import android.content.Context;
+import android.net.Uri;
+import android.os.SystemClock;
+
+import com.owncloud.android.lib.common.OwnCloudClient;
+import com.owncloud.android.lib.common.OwnCloudClientFactory;
+import com.owncloud.android.lib.common.OwnCloudCredentialsFactory;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Registry of the ownCloud clients shared by the operators, one client per
+ * server address and username. The downloaders and uploaders connecting to
+ * the same account reuse the same client, with its cookies and its pool of
+ * keep-alive connections, instead of creating a new client for each batch.
+ * The sessions that have not been used for the idle timeout are evicted.
+ *
+ * @author Alkisum
+ * @version 1.9
+ * @since 1.9
+ */
+public final class NcSessions {
+
+    /**
+     * Default time in milliseconds after which an unused session is evicted.
+     */
+    private static final long DEFAULT_IDLE_TIMEOUT = 5 * 60 * 1000;
+
+    /**
+     * Sessions, the keys are built from the server address and the username.
+     */
+    private static final Map<String, Session> SESSIONS = new HashMap<>();
+
+    /**
+     * Time in milliseconds after which an unused session is evicted.
+     */
+    private static long idleTimeout = DEFAULT_IDLE_TIMEOUT;
+
+    /**
+     * NcSessions constructor.
+     */
+    private NcSessions() {
+
+    }
+
+    /**
+     * Set the time after which a session that has not been used is evicted,
+     * its idle connections being closed. The default value is 5 minutes.
+     *
+     * @param timeout Idle timeout in milliseconds
+     */
+    public static synchronized void setIdleTimeout(final long timeout) {
+        idleTimeout = timeout;
+    }
+
+    /**
+     * Evict all the sessions, for example when the user logs out. The
+     * operators already initialized keep their client.
+     */
+    public static synchronized void clear() {
+        for (Session session : SESSIONS.values()) {
+            session.close();
+        }
+        SESSIONS.clear();
+    }
+
+    /**
+     * Get the client of the given account, creating it if there is no
+     * session for the account. The credentials of the client are updated
+     * with the given password.
+     *
+     * @param context  Context
+     * @param address  Server address
+     * @param username Username
+     * @param password Password
+     * @return ownCloud client
+     */
+    static synchronized OwnCloudClient getClient(final Context context,
+                                                 final String address,
+                                                 final String username,
+                                                 final String password) {
+        long now = SystemClock.elapsedRealtime();
+        evictIdleSessions(now);
+        // The null character can appear neither in an address nor in a name
+        String key = address + '\u0000' + username;
+        Session session = SESSIONS.get(key);
+        if (session == null) {
+            // The application context is kept, the activity could leak
+            OwnCloudClient client = OwnCloudClientFactory.createOwnCloudClient(
+                    Uri.parse(address), context.getApplicationContext(), true);
+            session = new Session(client);
+            SESSIONS.put(key, session);
+        }
+        session.client.setCredentials(
+                OwnCloudCredentialsFactory.newBasicCredentials(
+                        username, password));
+        session.lastUsed = now;
+        return session.client;
+    }
+
+    /**
+     * Evict the sessions that have not been used for the idle timeout.
+     *
+     * @param now Current time in milliseconds
+     */
+    private static void evictIdleSessions(final long now) {
+        Iterator<Session> sessions = SESSIONS.values().iterator();
+        while (sessions.hasNext()) {
+            Session session = sessions.next();
+            if (now - session.lastUsed > idleTimeout) {
+                session.close();
+                sessions.remove();
+            }
+        }
+    }
+
+    /**
+     * Client shared by the operators of an account.
+     */
+    private static final class Session {
+
+        /**
+         * ownCloud client.
+         */
+        private final OwnCloudClient client;
+
+        /**
+         * Time in milliseconds when the session was last used.
+         */
+        private long lastUsed;
+
+        /**
+         * Session constructor.
+         *
+         * @param client ownCloud client
+         */
+        private Session(final OwnCloudClient client) {
+            this.client = client;
+        }
+
+        /**
+         * Close the connections that have been idle for the idle timeout.
+         * The connection manager can be shared with other sessions, the
+         * connections in use are not closed.
+         */
+        private void close() {
+            client.getHttpConnectionManager().closeIdleConnections(
+                    idleTimeout);
+        }
+    }
+}
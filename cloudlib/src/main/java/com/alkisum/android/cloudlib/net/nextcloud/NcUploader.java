@@ -2,30 +2,42 @@ package com.alkisum.android.cloudlib.net.nextcloud;
 
 import android.content.Context;
 import android.content.Intent;
-import android.os.Handler;
 import android.util.Log;
 
 import com.alkisum.android.cloudlib.R;
 import com.alkisum.android.cloudlib.events.UploadEvent;
 import com.alkisum.android.cloudlib.file.CloudFile;
+import com.alkisum.android.cloudlib.file.CloudFileChannel;
+import com.alkisum.android.cloudlib.file.StreamableFile;
 import com.alkisum.android.cloudlib.utils.OcUtils;
 import com.owncloud.android.lib.common.network.OnDatatransferProgressListener;
 import com.owncloud.android.lib.common.operations.OnRemoteOperationListener;
 import com.owncloud.android.lib.common.operations.RemoteOperation;
 import com.owncloud.android.lib.common.operations.RemoteOperationResult;
 import com.owncloud.android.lib.resources.files.FileUtils;
+import com.owncloud.android.lib.resources.files.ReadFolderRemoteOperation;
 import com.owncloud.android.lib.resources.files.UploadFileRemoteOperation;
-
-import org.greenrobot.eventbus.EventBus;
+import com.owncloud.android.lib.resources.files.model.RemoteFile;
 
 import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Queue;
+import java.util.Set;
 
 /**
- * Class uploading files to the server.
+ * Class uploading files to the server. The streamed files, given by the file
+ * writers in streamed mode, are serialized straight into the upload requests,
+ * the next file being serialized while the previous one is uploaded. The
+ * files can be taken from a channel filled by a file writer, the uploads then
+ * start while the writer is still running.
  *
  * @author Alkisum
- * @version 1.8
+ * @version 1.9
  * @since 1.0
  */
 public class NcUploader extends NcOperator implements OnRemoteOperationListener,
@@ -36,25 +48,130 @@ public class NcUploader extends NcOperator implements OnRemoteOperationListener,
      */
     private static final String TAG = "NcUploader";
 
+    /**
+     * Name of the directory where the chunked upload progress is persisted.
+     */
+    private static final String CHUNKED_UPLOAD_DIR = "chunked_uploads";
+
     /**
      * Subscribers allowed to process the events.
      */
     private final Integer[] subscriberIds;
 
     /**
-     * Queue of files to upload.
+     * Queue of files to upload, null if the files are taken from a channel.
      */
     private Queue<CloudFile> cloudFiles;
 
     /**
-     * Path on the server where to upload the file.
+     * Channel of files to upload, null if the files are taken from a queue.
      */
-    private String remotePath;
+    private CloudFileChannel channel;
+
+    /**
+     * Files whose upload has been started, in queue order.
+     */
+    private List<CloudFile> startedFiles;
+
+    /**
+     * Operations that hashed the started files, null until the file has been
+     * hashed.
+     */
+    private List<SkippableUploadRemoteOperation> hashedOperations;
+
+    /**
+     * Indexes of the files whose upload has been skipped.
+     */
+    private Set<Integer> skippedIndexes;
+
+    /**
+     * Index in the started files of the file uploaded by each running
+     * operation.
+     */
+    private Map<RemoteOperation, Integer> operationIndexes;
+
+    /**
+     * Indexes of the files uploaded but not reported yet because a file
+     * preceding them in the queue is still being uploaded.
+     */
+    private Set<Integer> unreportedIndexes;
+
+    /**
+     * Number of files reported as uploaded.
+     */
+    private int reportedFiles;
+
+    /**
+     * Maximum number of upload operations running at the same time.
+     */
+    private int maxParallelUploads = 1;
 
     /**
-     * EventBus instance.
+     * Flag set to true when an operation failed, the remaining results are
+     * then ignored.
      */
-    private final EventBus eventBus = EventBus.getDefault();
+    private boolean failed;
+
+    /**
+     * Flag set to true when all the files have been uploaded, the remaining
+     * channel notifications are then ignored.
+     */
+    private boolean complete;
+
+    /**
+     * File storing the manifest used to skip the unchanged files, null if
+     * the unchanged files are uploaded as well.
+     */
+    private File manifestFile;
+
+    /**
+     * Manifest of the files uploaded during the previous synchronisations.
+     */
+    private SyncManifest manifest;
+
+    /**
+     * Remote files listed in the remote path, the keys are the remote paths.
+     */
+    private Map<String, RemoteFile> listedFiles;
+
+    /**
+     * Operation listing the remote files for the current batch.
+     */
+    private RemoteOperation listingOperation;
+
+    /**
+     * Flag set to true when the remote files are listed after the uploads to
+     * refresh the manifest.
+     */
+    private boolean refreshingManifest;
+
+    /**
+     * Size in bytes above which the files are uploaded in chunks.
+     */
+    private long chunkedUploadThreshold = Long.MAX_VALUE;
+
+    /**
+     * Size in bytes of the buffer holding the content of a streamed file,
+     * the larger content is sent with the chunked transfer encoding.
+     */
+    private int streamBufferSize =
+            StreamUploadRemoteOperation.DEFAULT_BUFFER_SIZE;
+
+    /**
+     * Next streamed file of the queue, serialized in the background before
+     * its upload starts.
+     */
+    private CloudFile preparedFile;
+
+    /**
+     * Operation uploading the prepared file.
+     */
+    private StreamUploadRemoteOperation preparedOperation;
+
+    /**
+     * Path on the server where to upload the file.
+     */
+    private String remotePath;
 
     /**
      * NcUploader constructor.
@@ -83,51 +200,340 @@ public class NcUploader extends NcOperator implements OnRemoteOperationListener,
      */
     public final void init(final String address, final String path,
                            final String username, final String password) {
-        remotePath = path;
+        remotePath = buildRemotePath(path);
         super.init(address, username, password);
     }
 
     /**
-     * Start uploading the given files.
+     * Enable skipping the files that did not change since their previous
+     * upload. Each file is hashed before being uploaded and the hash is
+     * compared with the hash stored in the given manifest file for the remote
+     * copy, which is only trusted if the remote ETag did not change since.
+     * The skipped files are reported with SKIPPED events instead of UPLOADING
+     * events. The remote path is listed once before and once after the
+     * uploads to get the ETags. The streamed files are always uploaded, they
+     * have no local copy to hash.
+     *
+     * @param manifestFile File storing the manifest, null to upload all files
+     */
+    public final void setManifestFile(final File manifestFile) {
+        this.manifestFile = manifestFile;
+    }
+
+    /**
+     * Upload the files larger than the given size in chunks, with the
+     * Nextcloud chunking protocol. The progress of a chunked upload is
+     * persisted, an interrupted upload of the same file resumes from the last
+     * uploaded chunk. The chunked upload is disabled by default.
+     *
+     * @param chunkedUploadThreshold Size in bytes above which the files are
+     *                               uploaded in chunks
+     */
+    public final void setChunkedUploadThreshold(
+            final long chunkedUploadThreshold) {
+        this.chunkedUploadThreshold = chunkedUploadThreshold;
+    }
+
+    /**
+     * Set the size of the buffer holding the serialized content of a
+     * streamed file. The content fitting into the buffer is sent with its
+     * length, the larger content is serialized straight into the request and
+     * sent with the chunked transfer encoding. The default size is 64 KiB.
+     *
+     * @param streamBufferSize Size of the buffer in bytes
+     */
+    public final void setStreamBufferSize(final int streamBufferSize) {
+        this.streamBufferSize = streamBufferSize;
+    }
+
+    /**
+     * Set the maximum number of files uploaded at the same time. The default
+     * value is 1, the files are then uploaded one after the other. The
+     * uploads share the same client, whose connection manager limits the
+     * number of connections per host.
+     *
+     * @param maxParallelUploads Maximum number of parallel uploads
+     */
+    public final void setMaxParallelUploads(final int maxParallelUploads) {
+        if (maxParallelUploads < 1) {
+            throw new IllegalArgumentException(
+                    "At least one upload must be allowed");
+        }
+        this.maxParallelUploads = maxParallelUploads;
+    }
+
+    /**
+     * Start uploading the given files. An UPLOADING event is posted for each
+     * uploaded file in queue order, even when the uploads finish out of
+     * order, followed by a single OK or ERROR event.
      *
      * @param cloudFileQueue Files to upload
      */
     public final void start(final Queue<CloudFile> cloudFileQueue) {
-        this.cloudFiles = cloudFileQueue;
-        CloudFile file = cloudFiles.poll();
-        if (file != null) {
-            upload(file);
+        runOnHandler(() -> {
+            this.cloudFiles = cloudFileQueue;
+            this.channel = null;
+            startBatch();
+        });
+    }
+
+    /**
+     * Start uploading the files of the given channel while they are put into
+     * it. A file is taken from the channel only when an upload can start,
+     * the producer filling the channel is then held back when the uploads
+     * are slower. An UPLOADING event is posted for each uploaded file in
+     * channel order, followed by a single OK event once the channel is closed
+     * and all its files are uploaded, or a single ERROR event if an upload
+     * fails or if the channel fails. A failed upload fails the channel to
+     * stop the producer.
+     *
+     * @param cloudFileChannel Channel of files to upload
+     */
+    public final void start(final CloudFileChannel cloudFileChannel) {
+        runOnHandler(() -> {
+            this.cloudFiles = null;
+            this.channel = cloudFileChannel;
+            cloudFileChannel.setListener(
+                    () -> runOnHandler(() -> onChannelChanged(
+                            cloudFileChannel)));
+            startBatch();
+        });
+    }
+
+    /**
+     * Reset the state of the uploader and start the batch.
+     */
+    private void startBatch() {
+        startedFiles = new ArrayList<>();
+        hashedOperations = new ArrayList<>();
+        skippedIndexes = new HashSet<>();
+        operationIndexes = new HashMap<>();
+        unreportedIndexes = new HashSet<>();
+        reportedFiles = 0;
+        failed = false;
+        complete = false;
+        manifest = null;
+        listedFiles = null;
+        listingOperation = null;
+        refreshingManifest = false;
+        preparedFile = null;
+        preparedOperation = null;
+        if (manifestFile != null && !isSourceDrained()) {
+            manifest = SyncManifest.load(manifestFile);
+            getRemoteFiles();
+        } else {
+            uploadAvailableFiles();
+        }
+    }
+
+    /**
+     * Called on the handler thread when a file is put into the channel or
+     * when the channel is closed or fails.
+     *
+     * @param changedChannel Channel that changed
+     */
+    private void onChannelChanged(final CloudFileChannel changedChannel) {
+        if (changedChannel != channel || failed || complete
+                || refreshingManifest
+                || (manifest != null && listedFiles == null)) {
+            // Stale channel, finished batch or listing in progress
+            return;
         }
+        uploadAvailableFiles();
+    }
+
+    /**
+     * Start uploading the available files and complete the batch if all the
+     * files have been uploaded. The batch fails if the channel has failed.
+     */
+    private void uploadAvailableFiles() {
+        if (channel != null && channel.getFailure() != null) {
+            Exception failure = channel.getFailure();
+            onFailure(failure.getMessage(), failure);
+            return;
+        }
+        uploadNextFiles();
+        if (!operationIndexes.isEmpty() || !isSourceDrained()) {
+            // Uploads running or more files to come
+            return;
+        }
+        if (manifest != null && skippedIndexes.size() < startedFiles.size()) {
+            // Get the ETags of the uploaded files
+            refreshingManifest = true;
+            getRemoteFiles();
+        } else {
+            onUploadComplete();
+        }
+    }
+
+    /**
+     * @return Next file to upload, null if no file is waiting
+     */
+    private CloudFile pollNextFile() {
+        if (channel != null) {
+            return channel.poll();
+        }
+        return cloudFiles.poll();
+    }
+
+    /**
+     * @return Next file to upload without taking it, null if no file is
+     * waiting
+     */
+    private CloudFile peekNextFile() {
+        if (channel != null) {
+            return channel.peek();
+        }
+        return cloudFiles.peek();
+    }
+
+    /**
+     * @return true if no more file will be given to the uploader
+     */
+    private boolean isSourceDrained() {
+        if (channel != null) {
+            return channel.isDrained();
+        }
+        return cloudFiles.isEmpty();
+    }
+
+    /**
+     * List all remote files contained in the remote path directory.
+     */
+    private void getRemoteFiles() {
+        ReadFolderRemoteOperation readOperation =
+                new ReadFolderRemoteOperation(remotePath);
+        listingOperation = readOperation;
+        readOperation.execute(getClient(), this, getHandler());
+    }
+
+    /**
+     * Start uploading the queued files until the maximum number of parallel
+     * uploads is reached.
+     */
+    private void uploadNextFiles() {
+        while (operationIndexes.size() < maxParallelUploads) {
+            CloudFile file = pollNextFile();
+            if (file == null) {
+                return;
+            }
+            startedFiles.add(file);
+            hashedOperations.add(null);
+            operationIndexes.put(upload(file), startedFiles.size() - 1);
+        }
+        prepareNextFile();
+    }
+
+    /**
+     * Serialize the next file of the queue in the background if it is
+     * streamed, to overlap its serialization with the running uploads.
+     */
+    private void prepareNextFile() {
+        CloudFile next = peekNextFile();
+        if (next != null && next != preparedFile && isStreamed(next)) {
+            preparedFile = next;
+            preparedOperation = createStreamOperation(next);
+            preparedOperation.prepareInBackground();
+        }
+    }
+
+    /**
+     * @param file File to upload
+     * @return true if the file content is serialized into the request, false
+     * if the file object is uploaded
+     */
+    private static boolean isStreamed(final CloudFile file) {
+        return file instanceof StreamableFile
+                && ((StreamableFile) file).isStreamed();
+    }
+
+    /**
+     * Create the operation uploading the given streamed file.
+     *
+     * @param file Streamed file to upload
+     * @return Operation uploading the file
+     */
+    private StreamUploadRemoteOperation createStreamOperation(
+            final CloudFile file) {
+        long modifiedTime = file.getModifiedTime();
+        if (modifiedTime <= 0) {
+            modifiedTime = System.currentTimeMillis();
+        }
+        StreamUploadRemoteOperation streamOp = new StreamUploadRemoteOperation(
+                (StreamableFile) file, remotePath + file.getName(),
+                "text/plain", modifiedTime / 1000, streamBufferSize);
+        streamOp.addDataTransferProgressListener(this);
+        return streamOp;
     }
 
     /**
      * Upload the file to the server.
      *
      * @param file File to upload
+     * @return Operation uploading the file
      */
-    private void upload(final CloudFile file) {
+    private RemoteOperation upload(final CloudFile file) {
+        if (isStreamed(file)) {
+            StreamUploadRemoteOperation streamOp;
+            if (file == preparedFile) {
+                streamOp = preparedOperation;
+                preparedFile = null;
+                preparedOperation = null;
+            } else {
+                streamOp = createStreamOperation(file);
+            }
+            streamOp.execute(getClient(), this, getHandler());
+            return streamOp;
+        }
         File fileToUpload = file.getFile();
-        String path = buildRemotePath(file);
+        String path = remotePath + file.getName();
         String mimeType = "text/plain";
         Long timeStampLong = fileToUpload.lastModified() / 1000;
         String timeStamp = timeStampLong.toString();
 
-        UploadFileRemoteOperation op = new UploadFileRemoteOperation(
-                fileToUpload.getAbsolutePath(),
-                path,
-                mimeType,
-                timeStamp);
-        op.addDataTransferProgressListener(this);
-        op.execute(getClient(), this, getHandler());
+        RemoteOperation op;
+        if (fileToUpload.length() > chunkedUploadThreshold) {
+            ChunkedUploadRemoteOperation chunkedOp =
+                    new ChunkedUploadRemoteOperation(fileToUpload, path,
+                            mimeType,
+                            ChunkedUploadRemoteOperation.DEFAULT_CHUNK_SIZE,
+                            new File(getContext().getFilesDir(),
+                                    CHUNKED_UPLOAD_DIR));
+            chunkedOp.addDataTransferProgressListener(this);
+            op = chunkedOp;
+        } else {
+            UploadFileRemoteOperation uploadOp = new UploadFileRemoteOperation(
+                    fileToUpload.getAbsolutePath(),
+                    path,
+                    mimeType,
+                    timeStamp);
+            uploadOp.addDataTransferProgressListener(this);
+            op = uploadOp;
+        }
+        if (manifest == null) {
+            op.execute(getClient(), this, getHandler());
+            return op;
+        }
+        String remoteHash = null;
+        RemoteFile remoteFile = listedFiles.get(path);
+        if (remoteFile != null) {
+            remoteHash = manifest.getHash(path, remoteFile.getEtag());
+        }
+        SkippableUploadRemoteOperation skippableOp =
+                new SkippableUploadRemoteOperation(fileToUpload, remoteHash,
+                        op);
+        skippableOp.execute(getClient(), this, getHandler());
+        return skippableOp;
     }
 
     /**
      * Build a valid remote path from the path given by the user.
      *
-     * @param file File used to build the remote path
+     * @param path Path submit by user
      * @return Valid remote path
      */
-    private String buildRemotePath(final CloudFile file) {
+    private static String buildRemotePath(final String path) {
+        String remotePath = path;
         if (remotePath == null || remotePath.equals("")) {
             remotePath = FileUtils.PATH_SEPARATOR;
         }
@@ -137,8 +543,7 @@ public class NcUploader extends NcOperator implements OnRemoteOperationListener,
         if (!remotePath.endsWith(FileUtils.PATH_SEPARATOR)) {
             remotePath = remotePath + FileUtils.PATH_SEPARATOR;
         }
-        // Add the file name to the remote path
-        return remotePath + file.getName();
+        return remotePath;
     }
 
     @Override
@@ -152,52 +557,171 @@ public class NcUploader extends NcOperator implements OnRemoteOperationListener,
         } else {
             percentage = 0;
         }
-        getNotifier().setTitle(getContext().getString(
-                R.string.uploader_uploading) + OcUtils.getFileName(fileName));
-        getNotifier().setProgress(percentage);
-        getNotifier().show();
+        showProgress(getContext().getString(R.string.uploader_uploading)
+                + OcUtils.getFileName(fileName), percentage);
     }
 
     @Override
     public final void onRemoteOperationFinish(
             final RemoteOperation operation,
             final RemoteOperationResult result) {
+        if (operation instanceof ReadFolderRemoteOperation) {
+            if (operation != listingOperation) {
+                // Operation started by a previous batch
+                return;
+            }
+            listingOperation = null;
+            if (!failed) {
+                onReadRemoteFolderFinish(result);
+            }
+            return;
+        }
+        Integer index = operationIndexes.remove(operation);
+        if (index == null) {
+            // Operation started by a previous batch
+            return;
+        }
+        if (failed) {
+            // The batch has already been aborted
+            return;
+        }
         if (result.isSuccess()) {
-            onUploadRemoteFileFinish();
+            onUploadRemoteFileFinish(operation, index);
         } else {
-            getNotifier().setIcon(
-                    android.R.drawable.stat_sys_upload_done);
-            getNotifier().setAutoCancel(true);
-            getNotifier().setTitle(getContext().getString(
-                    R.string.uploader_failed));
-            getNotifier().setProgress(100);
-            getNotifier().show();
-            Log.e(TAG, result.getLogMessage(), result.getException());
-            eventBus.post(new UploadEvent(subscriberIds, UploadEvent.ERROR,
-                    result.getLogMessage()));
+            onFailure(result.getLogMessage(), result.getException());
+        }
+    }
+
+    /**
+     * Abort the batch. The channel is failed to stop its producer.
+     *
+     * @param message   Error message
+     * @param exception Exception that aborted the batch, null if unknown
+     */
+    private void onFailure(final String message, final Exception exception) {
+        failed = true;
+        getNotifier().setIcon(
+                android.R.drawable.stat_sys_upload_done);
+        getNotifier().setAutoCancel(true);
+        getNotifier().setTitle(getContext().getString(
+                R.string.uploader_failed));
+        getNotifier().setProgress(100);
+        getNotifier().show();
+        Log.e(TAG, message, exception);
+        if (channel != null) {
+            Exception failure = exception;
+            if (failure == null) {
+                failure = new IOException(message);
+            }
+            channel.fail(failure);
         }
+        post(new UploadEvent(subscriberIds, UploadEvent.ERROR, message));
     }
 
     /**
-     * Called when the upload remote file operation is finished.
+     * Called when the read remote folder operation is finished. A failed
+     * listing does not abort the batch, the files are then uploaded without
+     * comparing them with their remote copy.
+     *
+     * @param result Operation result
      */
-    private void onUploadRemoteFileFinish() {
-        CloudFile file = cloudFiles.poll();
-        if (file != null) {
-            upload(file);
-            eventBus.post(new UploadEvent(subscriberIds,
-                    UploadEvent.UPLOADING));
+    private void onReadRemoteFolderFinish(final RemoteOperationResult result) {
+        listedFiles = new HashMap<>();
+        if (result.isSuccess()) {
+            for (Object obj : result.getData()) {
+                RemoteFile remoteFile = (RemoteFile) obj;
+                listedFiles.put(remoteFile.getRemotePath(), remoteFile);
+            }
         } else {
-            new Handler().postDelayed(() -> {
-                getNotifier().setIcon(
-                        android.R.drawable.stat_sys_upload_done);
-                getNotifier().setAutoCancel(true);
-                getNotifier().setTitle(getContext().getString(
-                        R.string.uploader_complete));
-                getNotifier().setProgress(100);
-                getNotifier().show();
-            }, 100);
-            eventBus.post(new UploadEvent(subscriberIds, UploadEvent.OK));
+            Log.w(TAG, "Cannot list remote files: " + result.getLogMessage());
         }
+        if (refreshingManifest) {
+            updateManifest();
+            onUploadComplete();
+        } else {
+            uploadAvailableFiles();
+        }
+    }
+
+    /**
+     * Called when the upload remote file operation is finished. The files
+     * uploaded before the files preceding them in the queue are held back
+     * until those are uploaded as well, to report the files in queue order.
+     *
+     * @param operation Finished operation
+     * @param index     Index in the started files of the uploaded file
+     */
+    private void onUploadRemoteFileFinish(final RemoteOperation operation,
+                                          final int index) {
+        if (operation instanceof SkippableUploadRemoteOperation) {
+            SkippableUploadRemoteOperation skippableOp =
+                    (SkippableUploadRemoteOperation) operation;
+            hashedOperations.set(index, skippableOp);
+            if (skippableOp.isSkipped()) {
+                skippedIndexes.add(index);
+            }
+        }
+        unreportedIndexes.add(index);
+        while (unreportedIndexes.remove(reportedFiles)) {
+            int result = UploadEvent.UPLOADING;
+            if (skippedIndexes.contains(reportedFiles)) {
+                result = UploadEvent.SKIPPED;
+            }
+            post(new UploadEvent(subscriberIds, result,
+                    startedFiles.get(reportedFiles)));
+            reportedFiles++;
+        }
+        uploadAvailableFiles();
+    }
+
+    /**
+     * Store the hash and the remote metadata of the uploaded files in the
+     * manifest and save it. The remote files are listed after the uploads,
+     * a remote file is only recorded if it still has the size and the
+     * modification time of the uploaded file. A file changed by another
+     * client in the meantime is left out, it is then compared again during
+     * the next synchronisation.
+     */
+    private void updateManifest() {
+        for (int i = 0; i < startedFiles.size(); i++) {
+            RemoteFile remoteFile = listedFiles.get(
+                    remotePath + startedFiles.get(i).getName());
+            SkippableUploadRemoteOperation hashedOp = hashedOperations.get(i);
+            if (remoteFile == null || skippedIndexes.contains(i)) {
+                continue;
+            }
+            if (hashedOp == null) {
+                manifest.put(remoteFile, null);
+            } else if (hashedOp.isUploadedCopy(remoteFile)) {
+                manifest.put(remoteFile, hashedOp.getHash());
+            } else {
+                Log.w(TAG, remoteFile.getRemotePath()
+                        + " changed after its upload");
+                manifest.remove(remoteFile.getRemotePath());
+            }
+        }
+        try {
+            manifest.save();
+        } catch (IOException e) {
+            // The next upload will send the files again
+            Log.e(TAG, "Cannot save manifest", e);
+        }
+    }
+
+    /**
+     * Called when all the files have been uploaded or skipped.
+     */
+    private void onUploadComplete() {
+        complete = true;
+        getHandler().postDelayed(() -> {
+            getNotifier().setIcon(
+                    android.R.drawable.stat_sys_upload_done);
+            getNotifier().setAutoCancel(true);
+            getNotifier().setTitle(getContext().getString(
+                    R.string.uploader_complete));
+            getNotifier().setProgress(100);
+            getNotifier().show();
+        }, 100);
+        post(new UploadEvent(subscriberIds, UploadEvent.OK));
     }
 }
@@ -0,0 +1,215 @@
+package com.alkisum.android.cloudlib.net.nextcloud;
+
+import com.owncloud.android.lib.common.OwnCloudClient;
+import com.owncloud.android.lib.common.network.WebdavEntry;
+import com.owncloud.android.lib.common.network.WebdavUtils;
+import com.owncloud.android.lib.common.operations.RemoteOperation;
+import com.owncloud.android.lib.common.operations.RemoteOperationResult;
+import com.owncloud.android.lib.resources.files.FileUtils;
+import com.owncloud.android.lib.resources.files.ReadFolderRemoteOperation;
+import com.owncloud.android.lib.resources.files.model.RemoteFile;
+
+import org.apache.commons.httpclient.HttpStatus;
+import org.apache.jackrabbit.webdav.DavConstants;
+import org.apache.jackrabbit.webdav.DavException;
+import org.apache.jackrabbit.webdav.MultiStatus;
+import org.apache.jackrabbit.webdav.MultiStatusResponse;
+import org.apache.jackrabbit.webdav.client.methods.PropFindMethod;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Remote operation listing the files of a folder and of all its subfolders.
+ * The whole tree is first requested with a single PROPFIND with Depth
+ * infinity. When the server refuses it, or silently answers with Depth 1 as
+ * Nextcloud does by default, the remaining folders are read with one PROPFIND
+ * per folder, several folders being read in parallel.
+ * The result data contains the files only, without the folders.
+ *
+ * @author Alkisum
+ * @version 1.9
+ * @since 1.9
+ */
+class ReadTreeRemoteOperation extends RemoteOperation {
+
+    /**
+     * MIME type given by the Nextcloud library to the folders.
+     */
+    private static final String DIRECTORY_MIME_TYPE = "DIR";
+
+    /**
+     * Remote path of the root folder.
+     */
+    private final String remotePath;
+
+    /**
+     * Maximum number of folders read at the same time when the tree cannot
+     * be listed with a single request.
+     */
+    private final int parallelism;
+
+    /**
+     * ReadTreeRemoteOperation constructor.
+     *
+     * @param remotePath  Remote path of the root folder, ending with a
+     *                    separator
+     * @param parallelism Maximum number of folders read at the same time when
+     *                    the tree cannot be listed with a single request
+     */
+    ReadTreeRemoteOperation(final String remotePath, final int parallelism) {
+        this.remotePath = remotePath;
+        this.parallelism = parallelism;
+    }
+
+    @Override
+    protected final RemoteOperationResult run(final OwnCloudClient client) {
+        PropFindMethod propFind = null;
+        try {
+            propFind = new PropFindMethod(client.getWebdavUri()
+                    + WebdavUtils.encodePath(remotePath),
+                    WebdavUtils.getAllPropSet(), DavConstants.DEPTH_INFINITY);
+            int status = client.executeMethod(propFind);
+            if (status == HttpStatus.SC_FORBIDDEN
+                    || status == HttpStatus.SC_BAD_REQUEST
+                    || status == HttpStatus.SC_NOT_IMPLEMENTED) {
+                // Depth infinity refused by the server
+                client.exhaustResponse(propFind.getResponseBodyAsStream());
+                List<String> folders = new ArrayList<>();
+                folders.add(remotePath);
+                return readFolders(client, folders, new ArrayList<>());
+            }
+            if (status != HttpStatus.SC_MULTI_STATUS) {
+                client.exhaustResponse(propFind.getResponseBodyAsStream());
+                return new RemoteOperationResult(false, propFind);
+            }
+            MultiStatus multiStatus = propFind.getResponseBodyAsMultiStatus();
+            String davPath = client.getWebdavUri().getPath();
+            ArrayList<Object> files = new ArrayList<>();
+            List<String> folders = new ArrayList<>();
+            boolean nested = false;
+            for (MultiStatusResponse response : multiStatus.getResponses()) {
+                WebdavEntry entry = new WebdavEntry(response, davPath);
+                RemoteFile remoteFile = new RemoteFile(entry);
+                String path = remoteFile.getRemotePath();
+                if (isRoot(path)) {
+                    continue;
+                }
+                nested |= getDepth(path) > 1;
+                if (entry.isDirectory()) {
+                    folders.add(path);
+                } else {
+                    files.add(remoteFile);
+                }
+            }
+            if (nested || folders.isEmpty()) {
+                RemoteOperationResult result =
+                        new RemoteOperationResult(true, propFind);
+                result.setData(files);
+                return result;
+            }
+            // Depth infinity downgraded to Depth 1 by the server
+            return readFolders(client, folders, files);
+        } catch (IOException | DavException e) {
+            return new RemoteOperationResult(e);
+        } finally {
+            if (propFind != null) {
+                propFind.releaseConnection();
+            }
+        }
+    }
+
+    /**
+     * Read the given folders and their subfolders with one request per
+     * folder.
+     *
+     * @param client  ownCloud client
+     * @param folders Remote paths of the folders to read
+     * @param files   Files already listed, the files found are added to it
+     * @return Operation result containing all the files
+     */
+    private RemoteOperationResult readFolders(final OwnCloudClient client,
+                                              final List<String> folders,
+                                              final ArrayList<Object> files) {
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism);
+        CompletionService<RemoteOperationResult> completionService =
+                new ExecutorCompletionService<>(executor);
+        try {
+            int running = 0;
+            for (String folder : folders) {
+                submit(completionService, client, folder);
+                running++;
+            }
+            while (running > 0) {
+                RemoteOperationResult folderResult =
+                        completionService.take().get();
+                running--;
+                if (!folderResult.isSuccess()) {
+                    return folderResult;
+                }
+                List<Object> data = folderResult.getData();
+                // The first entry is the folder itself
+                for (int i = 1; i < data.size(); i++) {
+                    RemoteFile remoteFile = (RemoteFile) data.get(i);
+                    if (DIRECTORY_MIME_TYPE.equals(remoteFile.getMimeType())) {
+                        submit(completionService, client,
+                                remoteFile.getRemotePath());
+                        running++;
+                    } else {
+                        files.add(remoteFile);
+                    }
+                }
+            }
+            RemoteOperationResult result = new RemoteOperationResult(
+                    RemoteOperationResult.ResultCode.OK);
+            result.setData(files);
+            return result;
+        } catch (InterruptedException | ExecutionException e) {
+            return new RemoteOperationResult(e);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Submit the reading of the given folder.
+     *
+     * @param completionService Completion service running the operations
+     * @param client            ownCloud client
+     * @param folder            Remote path of the folder to read
+     */
+    private static void submit(
+            final CompletionService<RemoteOperationResult> completionService,
+            final OwnCloudClient client, final String folder) {
+        completionService.submit(
+                () -> new ReadFolderRemoteOperation(folder).execute(client));
+    }
+
+    /**
+     * @param path Remote path of an entry
+     * @return true if the entry is the root folder
+     */
+    private boolean isRoot(final String path) {
+        return path.equals(remotePath)
+                || (path + FileUtils.PATH_SEPARATOR).equals(remotePath);
+    }
+
+    /**
+     * @param path Remote path of an entry of the tree
+     * @return Depth of the entry below the root folder, 1 for its children
+     */
+    private int getDepth(final String path) {
+        String relativePath = path.substring(remotePath.length());
+        if (relativePath.endsWith(FileUtils.PATH_SEPARATOR)) {
+            relativePath = relativePath.substring(0,
+                    relativePath.length() - 1);
+        }
+        return relativePath.split(FileUtils.PATH_SEPARATOR).length;
+    }
+}
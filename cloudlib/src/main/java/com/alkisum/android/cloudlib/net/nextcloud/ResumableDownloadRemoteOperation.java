@@ -0,0 +1,330 @@
+package com.alkisum.android.cloudlib.net.nextcloud;
+
+import com.alkisum.android.cloudlib.file.CloudFile;
+import com.alkisum.android.cloudlib.file.CloudFileParser;
+import com.owncloud.android.lib.common.OwnCloudClient;
+import com.owncloud.android.lib.common.network.OnDatatransferProgressListener;
+import com.owncloud.android.lib.common.network.WebdavUtils;
+import com.owncloud.android.lib.common.operations.RemoteOperation;
+import com.owncloud.android.lib.common.operations.RemoteOperationResult;
+
+import org.apache.commons.httpclient.Header;
+import org.apache.commons.httpclient.HttpStatus;
+import org.apache.commons.httpclient.methods.GetMethod;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Remote operation downloading a file into a partial file that is kept when
+ * the download fails. The next download of the same file resumes the partial
+ * file with a Range request, validated with If-Range against the ETag of the
+ * remote file: the server sends the whole file again if it changed. When a
+ * parser is set, the file is parsed on the operation thread once downloaded,
+ * or straight from the response body without writing it to disk.
+ *
+ * @author Alkisum
+ * @version 1.9
+ * @since 1.9
+ */
+class ResumableDownloadRemoteOperation extends RemoteOperation {
+
+    /**
+     * Extension of the partial files.
+     */
+    private static final String PART_EXT = ".part";
+
+    /**
+     * Size of the buffer used to write the file.
+     */
+    private static final int BUFFER_SIZE = 8192;
+
+    /**
+     * Remote path of the file to download.
+     */
+    private final String remotePath;
+
+    /**
+     * ETag of the remote file, null if unknown.
+     */
+    private final String etag;
+
+    /**
+     * Local file where the remote file is downloaded.
+     */
+    private final File targetFile;
+
+    /**
+     * Listeners notified of the transfer progress.
+     */
+    private final Set<OnDatatransferProgressListener> listeners =
+            new HashSet<>();
+
+    /**
+     * Parser converting the downloaded file, null if the file is not parsed.
+     */
+    private CloudFileParser parser;
+
+    /**
+     * File holding the metadata given to the parser.
+     */
+    private CloudFile metadata;
+
+    /**
+     * Flag set to true if the response body is parsed without being written
+     * to disk.
+     */
+    private boolean inMemory;
+
+    /**
+     * Flag set to true if the local file is already up to date, it is then
+     * only parsed.
+     */
+    private boolean upToDate;
+
+    /**
+     * File object returned by the parser, null if the file is not parsed.
+     */
+    private CloudFile parsedFile;
+
+    /**
+     * ResumableDownloadRemoteOperation constructor.
+     *
+     * @param remotePath Remote path of the file to download
+     * @param etag       ETag of the remote file, null if unknown
+     * @param targetFile Local file where the remote file is downloaded
+     */
+    ResumableDownloadRemoteOperation(final String remotePath,
+                                     final String etag,
+                                     final File targetFile) {
+        this.remotePath = remotePath;
+        this.etag = etag;
+        this.targetFile = targetFile;
+    }
+
+    /**
+     * @param listener Listener to notify of the transfer progress
+     */
+    final void addDatatransferProgressListener(
+            final OnDatatransferProgressListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Parse the downloaded file with the given parser.
+     *
+     * @param fileParser Parser converting the downloaded file
+     * @param file       File holding the metadata given to the parser
+     * @param memory     true to parse the response body without writing it to
+     *                   disk, false to parse the file once downloaded
+     */
+    final void setParser(final CloudFileParser fileParser,
+                         final CloudFile file, final boolean memory) {
+        this.parser = fileParser;
+        this.metadata = file;
+        this.inMemory = memory;
+    }
+
+    /**
+     * @param upToDate true if the local file is already up to date, it is
+     *                 then only parsed
+     */
+    final void setUpToDate(final boolean upToDate) {
+        this.upToDate = upToDate;
+    }
+
+    /**
+     * @return true if the local file was already up to date
+     */
+    final boolean isUpToDate() {
+        return upToDate;
+    }
+
+    /**
+     * @return File object returned by the parser, null if the file is not
+     * parsed
+     */
+    final CloudFile getParsedFile() {
+        return parsedFile;
+    }
+
+    @Override
+    protected final RemoteOperationResult run(final OwnCloudClient client) {
+        if (parser != null && inMemory) {
+            return parse(client);
+        }
+        File partFile = new File(targetFile.getPath() + PART_EXT);
+        File parent = partFile.getParentFile();
+        if (parent != null && !parent.exists() && !parent.mkdirs()) {
+            return new RemoteOperationResult(
+                    RemoteOperationResult.ResultCode.LOCAL_STORAGE_NOT_COPIED);
+        }
+        try {
+            RemoteOperationResult result;
+            if (upToDate) {
+                result = new RemoteOperationResult(
+                        RemoteOperationResult.ResultCode.OK);
+            } else {
+                result = download(client, partFile,
+                        etag != null && !etag.isEmpty());
+            }
+            if (result.isSuccess() && !upToDate
+                    && (targetFile.exists() && !targetFile.delete()
+                    || !partFile.renameTo(targetFile))) {
+                return new RemoteOperationResult(RemoteOperationResult
+                        .ResultCode.LOCAL_STORAGE_NOT_COPIED);
+            }
+            if (result.isSuccess() && parser != null) {
+                try (InputStream in = new BufferedInputStream(
+                        new FileInputStream(targetFile))) {
+                    parsedFile = parser.parse(metadata, in);
+                }
+            }
+            return result;
+        } catch (IOException e) {
+            return new RemoteOperationResult(e);
+        }
+    }
+
+    /**
+     * Parse the remote file straight from the response body.
+     *
+     * @param client ownCloud client
+     * @return Operation result
+     */
+    private RemoteOperationResult parse(final OwnCloudClient client) {
+        GetMethod get = new GetMethod(client.getWebdavUri()
+                + WebdavUtils.encodePath(remotePath));
+        try {
+            int status = client.executeMethod(get);
+            if (status != HttpStatus.SC_OK) {
+                client.exhaustResponse(get.getResponseBodyAsStream());
+                return new RemoteOperationResult(false, get);
+            }
+            try (InputStream in = new BufferedInputStream(
+                    get.getResponseBodyAsStream())) {
+                parsedFile = parser.parse(metadata, in);
+            }
+            return new RemoteOperationResult(true, get);
+        } catch (IOException e) {
+            return new RemoteOperationResult(e);
+        } finally {
+            get.releaseConnection();
+        }
+    }
+
+    /**
+     * Download the remote file into the partial file.
+     *
+     * @param client   ownCloud client
+     * @param partFile Partial file
+     * @param resume   true to resume the partial file if it exists
+     * @return Operation result
+     * @throws IOException An error occurred while downloading the file
+     */
+    private RemoteOperationResult download(final OwnCloudClient client,
+                                           final File partFile,
+                                           final boolean resume)
+            throws IOException {
+        long offset = 0;
+        if (resume && partFile.exists()) {
+            offset = partFile.length();
+        }
+        GetMethod get = new GetMethod(client.getWebdavUri()
+                + WebdavUtils.encodePath(remotePath));
+        try {
+            if (offset > 0) {
+                get.setRequestHeader("Range", "bytes=" + offset + "-");
+                get.setRequestHeader("If-Range", "\"" + etag + "\"");
+            }
+            int status = client.executeMethod(get);
+            if (status == HttpStatus.SC_REQUESTED_RANGE_NOT_SATISFIABLE) {
+                // The partial file is not a prefix of the remote file
+                client.exhaustResponse(get.getResponseBodyAsStream());
+                get.releaseConnection();
+                return download(client, partFile, false);
+            }
+            if (status != HttpStatus.SC_OK
+                    && status != HttpStatus.SC_PARTIAL_CONTENT) {
+                client.exhaustResponse(get.getResponseBodyAsStream());
+                return new RemoteOperationResult(false, get);
+            }
+            if (status == HttpStatus.SC_OK) {
+                // The server sent the whole file
+                offset = 0;
+            }
+            long contentLength = parseLength(
+                    get.getResponseHeader("Content-Length"));
+            long transferred = write(get.getResponseBodyAsStream(), partFile,
+                    offset, contentLength);
+            boolean success = contentLength < 0
+                    || transferred == offset + contentLength;
+            return new RemoteOperationResult(success, get);
+        } finally {
+            get.releaseConnection();
+        }
+    }
+
+    /**
+     * Write the response body into the partial file.
+     *
+     * @param body          Response body
+     * @param partFile      Partial file
+     * @param offset        Number of bytes already in the partial file
+     * @param contentLength Length of the response body, -1 if unknown
+     * @return Number of bytes in the partial file
+     * @throws IOException An error occurred while writing the file
+     */
+    private long write(final InputStream body, final File partFile,
+                       final long offset, final long contentLength)
+            throws IOException {
+        long total = -1;
+        if (contentLength >= 0) {
+            total = offset + contentLength;
+        }
+        long transferred = offset;
+        try (InputStream in = new BufferedInputStream(body);
+             OutputStream out = new FileOutputStream(partFile, offset > 0)) {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int read = in.read(buffer);
+            while (read != -1) {
+                out.write(buffer, 0, read);
+                transferred += read;
+                for (OnDatatransferProgressListener listener : listeners) {
+                    listener.onTransferProgress(read, transferred, total,
+                            targetFile.getName());
+                }
+                read = in.read(buffer);
+            }
+        }
+        return transferred;
+    }
+
+    /**
+     * @param lengthHeader Content-Length header, null if missing
+     * @return Parsed content length, -1 if the length is missing or cannot be
+     * parsed
+     */
+    private static long parseLength(final Header lengthHeader) {
+        if (lengthHeader == null || lengthHeader.getValue() == null) {
+            return -1;
+        }
+        try {
+            long length = Long.parseLong(lengthHeader.getValue().trim());
+            if (length < 0) {
+                return -1;
+            }
+            return length;
+        } catch (NumberFormatException e) {
+            // Malformed or duplicated header, the length is unknown
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package com.alkisum.android.cloudlib.net.nextcloud;
+
+import com.alkisum.android.cloudlib.utils.IoUtils;
+import com.owncloud.android.lib.common.OwnCloudClient;
+import com.owncloud.android.lib.common.operations.RemoteOperation;
+import com.owncloud.android.lib.common.operations.RemoteOperationResult;
+import com.owncloud.android.lib.resources.files.model.RemoteFile;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Remote operation hashing a local file and running the upload operation only
+ * if the hash differs from the hash of the remote copy.
+ *
+ * @author Alkisum
+ * @version 1.9
+ * @since 1.9
+ */
+class SkippableUploadRemoteOperation extends RemoteOperation {
+
+    /**
+     * Local file to upload.
+     */
+    private final File localFile;
+
+    /**
+     * Hash of the remote copy, null if unknown.
+     */
+    private final String remoteHash;
+
+    /**
+     * Operation uploading the file.
+     */
+    private final RemoteOperation uploadOperation;
+
+    /**
+     * Hash of the local file, null until the operation has run.
+     */
+    private String hash;
+
+    /**
+     * Size of the local file when it was hashed.
+     */
+    private long length;
+
+    /**
+     * Modification time in seconds of the local file when it was hashed.
+     */
+    private long modifiedTime;
+
+    /**
+     * Flag set to true if the upload has been skipped.
+     */
+    private boolean skipped;
+
+    /**
+     * SkippableUploadRemoteOperation constructor.
+     *
+     * @param localFile       Local file to upload
+     * @param remoteHash      Hash of the remote copy, null if unknown
+     * @param uploadOperation Operation uploading the file
+     */
+    SkippableUploadRemoteOperation(final File localFile,
+                                   final String remoteHash,
+                                   final RemoteOperation uploadOperation) {
+        this.localFile = localFile;
+        this.remoteHash = remoteHash;
+        this.uploadOperation = uploadOperation;
+    }
+
+    @Override
+    protected final RemoteOperationResult run(final OwnCloudClient client) {
+        length = localFile.length();
+        modifiedTime = localFile.lastModified() / 1000;
+        try {
+            hash = IoUtils.sha1(localFile);
+        } catch (IOException e) {
+            return new RemoteOperationResult(e);
+        }
+        if (hash.equals(remoteHash)) {
+            skipped = true;
+            return new RemoteOperationResult(
+                    RemoteOperationResult.ResultCode.OK);
+        }
+        return uploadOperation.execute(client);
+    }
+
+    /**
+     * @return Hash of the local file, null until the operation has run
+     */
+    final String getHash() {
+        return hash;
+    }
+
+    /**
+     * @return true if the upload has been skipped, false otherwise
+     */
+    final boolean isSkipped() {
+        return skipped;
+    }
+
+    /**
+     * Check if the given remote file is the copy uploaded by this operation,
+     * by comparing its size and modification time with the ones of the
+     * local file. The server keeps the modification time sent with the
+     * upload, a copy uploaded by another client has another one.
+     *
+     * @param remoteFile Remote file listed after the upload
+     * @return true if the remote file is the uploaded copy, false otherwise
+     */
+    final boolean isUploadedCopy(final RemoteFile remoteFile) {
+        return remoteFile.getLength() == length
+                && remoteFile.getModifiedTimestamp() / 1000 == modifiedTime;
+    }
+}
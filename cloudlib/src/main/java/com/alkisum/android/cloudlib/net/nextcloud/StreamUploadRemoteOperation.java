@@ -0,0 +1,359 @@
+package com.alkisum.android.cloudlib.net.nextcloud;
+
+import com.alkisum.android.cloudlib.file.StreamableFile;
+import com.owncloud.android.lib.common.OwnCloudClient;
+import com.owncloud.android.lib.common.network.OnDatatransferProgressListener;
+import com.owncloud.android.lib.common.network.WebdavUtils;
+import com.owncloud.android.lib.common.operations.RemoteOperation;
+import com.owncloud.android.lib.common.operations.RemoteOperationResult;
+
+import org.apache.commons.httpclient.HttpStatus;
+import org.apache.commons.httpclient.methods.PutMethod;
+import org.apache.commons.httpclient.methods.RequestEntity;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.HashSet;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Remote operation uploading the content of a streamable file, serialized
+ * straight into the PUT request without writing a local file. The content is
+ * first serialized into a reusable buffer: when it fits, it is sent with its
+ * length, otherwise it is serialized again into the request, sent with the
+ * chunked transfer encoding. The content can be serialized in the background
+ * before the operation runs, while the previous file is being uploaded.
+ *
+ * @author Alkisum
+ * @version 1.9
+ * @since 1.9
+ */
+class StreamUploadRemoteOperation extends RemoteOperation {
+
+    /**
+     * Default size in bytes of the buffer holding the serialized content.
+     */
+    static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Maximum number of buffers kept for reuse.
+     */
+    private static final int MAX_POOLED_BUFFERS = 4;
+
+    /**
+     * Size of the slices sent from the buffer, between two progress updates.
+     */
+    private static final int SLICE_SIZE = 8192;
+
+    /**
+     * Buffers kept for reuse, shared by all the operations.
+     */
+    private static final Queue<Buffer> BUFFERS =
+            new ConcurrentLinkedQueue<>();
+
+    /**
+     * Executor serializing the content in the background.
+     */
+    private static final ExecutorService EXECUTOR =
+            Executors.newCachedThreadPool();
+
+    /**
+     * File whose content is uploaded.
+     */
+    private final StreamableFile file;
+
+    /**
+     * Remote path of the uploaded file.
+     */
+    private final String remotePath;
+
+    /**
+     * MIME type of the file.
+     */
+    private final String mimeType;
+
+    /**
+     * Modification time of the file in seconds, sent to the server.
+     */
+    private final long modifiedTime;
+
+    /**
+     * Size in bytes above which the content is not buffered.
+     */
+    private final int bufferSize;
+
+    /**
+     * Listeners notified of the transfer progress.
+     */
+    private final Set<OnDatatransferProgressListener> listeners =
+            new HashSet<>();
+
+    /**
+     * Flag set to true when the content has been serialized into the buffer.
+     */
+    private boolean prepared;
+
+    /**
+     * Buffer holding the serialized content, null if the content does not
+     * fit into the buffer.
+     */
+    private Buffer buffer;
+
+    /**
+     * Exception thrown while serializing the content into the buffer.
+     */
+    private Exception exception;
+
+    /**
+     * StreamUploadRemoteOperation constructor.
+     *
+     * @param file         File whose content is uploaded
+     * @param remotePath   Remote path of the uploaded file
+     * @param mimeType     MIME type of the file
+     * @param modifiedTime Modification time of the file in seconds
+     * @param bufferSize   Size in bytes above which the content is not
+     *                     buffered
+     */
+    StreamUploadRemoteOperation(final StreamableFile file,
+                                final String remotePath,
+                                final String mimeType,
+                                final long modifiedTime,
+                                final int bufferSize) {
+        this.file = file;
+        this.remotePath = remotePath;
+        this.mimeType = mimeType;
+        this.modifiedTime = modifiedTime;
+        this.bufferSize = bufferSize;
+    }
+
+    /**
+     * @param listener Listener to notify of the transfer progress
+     */
+    final void addDataTransferProgressListener(
+            final OnDatatransferProgressListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Serialize the content into the buffer in the background.
+     */
+    final void prepareInBackground() {
+        EXECUTOR.execute(this::prepare);
+    }
+
+    /**
+     * Serialize the content into the buffer, if it has not been done yet.
+     */
+    private synchronized void prepare() {
+        if (prepared) {
+            return;
+        }
+        prepared = true;
+        Buffer candidate = BUFFERS.poll();
+        if (candidate == null) {
+            candidate = new Buffer();
+        }
+        candidate.reset(bufferSize);
+        try {
+            file.writeTo(candidate);
+            buffer = candidate;
+        } catch (BufferOverflowException e) {
+            // The content is serialized again into the request
+            release(candidate);
+        } catch (IOException | RuntimeException e) {
+            // A runtime exception comes from the encoder, such as a codec
+            // failing or a NaN rejected by the JSON writer
+            exception = e;
+            release(candidate);
+        }
+    }
+
+    @Override
+    protected final RemoteOperationResult run(final OwnCloudClient client) {
+        prepare();
+        if (exception != null) {
+            return new RemoteOperationResult(exception);
+        }
+        PutMethod putMethod = null;
+        try {
+            putMethod = new PutMethod(client.getWebdavUri()
+                    + WebdavUtils.encodePath(remotePath));
+            putMethod.setRequestHeader("X-OC-Mtime",
+                    Long.toString(modifiedTime));
+            putMethod.setRequestEntity(new StreamRequestEntity());
+            int status = client.executeMethod(putMethod);
+            client.exhaustResponse(putMethod.getResponseBodyAsStream());
+            return new RemoteOperationResult(status == HttpStatus.SC_OK
+                    || status == HttpStatus.SC_CREATED
+                    || status == HttpStatus.SC_NO_CONTENT, putMethod);
+        } catch (IOException | RuntimeException e) {
+            // The content is serialized again into the request when it does
+            // not fit in the buffer, the encoder can then fail here
+            return new RemoteOperationResult(e);
+        } finally {
+            if (putMethod != null) {
+                putMethod.releaseConnection();
+            }
+            synchronized (this) {
+                if (buffer != null) {
+                    release(buffer);
+                    buffer = null;
+                }
+            }
+        }
+    }
+
+    /**
+     * Keep the given buffer for reuse, unless enough buffers are kept.
+     *
+     * @param released Buffer not used anymore
+     */
+    private static void release(final Buffer released) {
+        if (BUFFERS.size() < MAX_POOLED_BUFFERS) {
+            BUFFERS.offer(released);
+        }
+    }
+
+    /**
+     * Notify the listeners of the transfer progress.
+     *
+     * @param sent    Number of bytes just sent
+     * @param written Number of bytes sent so far
+     * @param total   Content length, -1 if unknown
+     */
+    private void notifyProgress(final long sent, final long written,
+                                final long total) {
+        for (OnDatatransferProgressListener listener : listeners) {
+            listener.onTransferProgress(sent, written, total, remotePath);
+        }
+    }
+
+    /**
+     * Request entity sending the buffered content or serializing the content
+     * into the request.
+     */
+    private class StreamRequestEntity implements RequestEntity {
+
+        @Override
+        public final boolean isRepeatable() {
+            // The content is the same each time it is serialized
+            return true;
+        }
+
+        @Override
+        public final void writeRequest(final OutputStream out)
+                throws IOException {
+            if (buffer != null) {
+                byte[] bytes = buffer.getBytes();
+                int length = buffer.size();
+                int written = 0;
+                while (written < length) {
+                    int slice = Math.min(SLICE_SIZE, length - written);
+                    out.write(bytes, written, slice);
+                    written += slice;
+                    notifyProgress(slice, written, length);
+                }
+                return;
+            }
+            file.writeTo(new FilterOutputStream(out) {
+
+                /**
+                 * Number of bytes sent so far.
+                 */
+                private long written;
+
+                @Override
+                public void write(final byte[] b, final int off,
+                                  final int len) throws IOException {
+                    out.write(b, off, len);
+                    written += len;
+                    notifyProgress(len, written, -1);
+                }
+            });
+        }
+
+        @Override
+        public final long getContentLength() {
+            if (buffer != null) {
+                return buffer.size();
+            }
+            // Sent with the chunked transfer encoding
+            return -1;
+        }
+
+        @Override
+        public final String getContentType() {
+            return mimeType;
+        }
+    }
+
+    /**
+     * Reusable buffer refusing the content exceeding its limit.
+     */
+    private static final class Buffer extends ByteArrayOutputStream {
+
+        /**
+         * Maximum number of bytes held by the buffer.
+         */
+        private int limit;
+
+        /**
+         * Empty the buffer, its array is kept.
+         *
+         * @param newLimit Maximum number of bytes held by the buffer
+         */
+        private void reset(final int newLimit) {
+            reset();
+            limit = newLimit;
+        }
+
+        /**
+         * @return Array holding the content, longer than the content
+         */
+        private byte[] getBytes() {
+            return buf;
+        }
+
+        @Override
+        public synchronized void write(final int b) {
+            if (count + 1 > limit) {
+                throw new BufferOverflowException();
+            }
+            super.write(b);
+        }
+
+        @Override
+        public synchronized void write(final byte[] b, final int off,
+                                       final int len) {
+            if (count + len > limit) {
+                throw new BufferOverflowException();
+            }
+            super.write(b, off, len);
+        }
+    }
+
+    /**
+     * Exception thrown when the content exceeds the buffer limit.
+     */
+    private static final class BufferOverflowException
+            extends RuntimeException {
+
+        /**
+         * Serial version UID.
+         */
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * BufferOverflowException constructor.
+         */
+        private BufferOverflowException() {
+            super("The content exceeds the buffer");
+        }
+    }
+}
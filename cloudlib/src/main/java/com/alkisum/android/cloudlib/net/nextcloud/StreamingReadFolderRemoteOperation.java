@@ -0,0 +1,383 @@
+package com.alkisum.android.cloudlib.net.nextcloud;
+
+import android.os.Handler;
+import android.util.Xml;
+
+import com.owncloud.android.lib.common.OwnCloudClient;
+import com.owncloud.android.lib.common.network.WebdavUtils;
+import com.owncloud.android.lib.common.operations.RemoteOperation;
+import com.owncloud.android.lib.common.operations.RemoteOperationResult;
+import com.owncloud.android.lib.resources.files.FileUtils;
+import com.owncloud.android.lib.resources.files.model.RemoteFile;
+
+import org.apache.commons.httpclient.HttpStatus;
+import org.apache.jackrabbit.webdav.DavConstants;
+import org.apache.jackrabbit.webdav.client.methods.PropFindMethod;
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.util.Date;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.Map;
+
+/**
+ * Remote operation listing the files of a folder by parsing the PROPFIND
+ * multistatus response as a stream. Each file is given to the listener on the
+ * handler thread as soon as its entry is parsed, the list of files is never
+ * held in memory. In recursive mode, the subfolders are read one after the
+ * other once the folder is parsed.
+ * The result data is empty, the files are only given to the listener.
+ *
+ * @author Alkisum
+ * @version 1.9
+ * @since 1.9
+ */
+class StreamingReadFolderRemoteOperation extends RemoteOperation {
+
+    /**
+     * Namespace of the WebDAV elements.
+     */
+    private static final String DAV_NAMESPACE = "DAV:";
+
+    /**
+     * Response element.
+     */
+    private static final String RESPONSE = "response";
+
+    /**
+     * Href element.
+     */
+    private static final String HREF = "href";
+
+    /**
+     * Propstat element.
+     */
+    private static final String PROPSTAT = "propstat";
+
+    /**
+     * Status element.
+     */
+    private static final String STATUS = "status";
+
+    /**
+     * Collection resource type element.
+     */
+    private static final String COLLECTION = "collection";
+
+    /**
+     * ETag property.
+     */
+    private static final String ETAG = "getetag";
+
+    /**
+     * Last modified date property.
+     */
+    private static final String LAST_MODIFIED = "getlastmodified";
+
+    /**
+     * Content length property.
+     */
+    private static final String CONTENT_LENGTH = "getcontentlength";
+
+    /**
+     * Content type property.
+     */
+    private static final String CONTENT_TYPE = "getcontenttype";
+
+    /**
+     * Creation date property.
+     */
+    private static final String CREATION_DATE = "creationdate";
+
+    /**
+     * Listener notified of the listed files.
+     */
+    interface OnRemoteFileListener {
+
+        /**
+         * Called on the handler thread when a file is listed.
+         *
+         * @param operation  Operation listing the file
+         * @param remoteFile Listed file
+         */
+        void onRemoteFile(RemoteOperation operation, RemoteFile remoteFile);
+    }
+
+    /**
+     * Remote path of the folder to list.
+     */
+    private final String remotePath;
+
+    /**
+     * Flag set to true if the files of the subfolders are listed too.
+     */
+    private final boolean recursive;
+
+    /**
+     * Handler used to notify the listener, null to notify it on the thread
+     * reading the folder.
+     */
+    private final Handler handler;
+
+    /**
+     * Listener notified of the listed files.
+     */
+    private final OnRemoteFileListener listener;
+
+    /**
+     * StreamingReadFolderRemoteOperation constructor.
+     *
+     * @param remotePath Remote path of the folder to list, ending with a
+     *                   separator
+     * @param recursive  true to list the files of the subfolders too
+     * @param handler    Handler used to notify the listener, null to notify
+     *                   it on the thread reading the folder
+     * @param listener   Listener notified of the listed files
+     */
+    StreamingReadFolderRemoteOperation(final String remotePath,
+                                       final boolean recursive,
+                                       final Handler handler,
+                                       final OnRemoteFileListener listener) {
+        this.remotePath = remotePath;
+        this.recursive = recursive;
+        this.handler = handler;
+        this.listener = listener;
+    }
+
+    @Override
+    protected final RemoteOperationResult run(final OwnCloudClient client) {
+        Deque<String> folders = new LinkedList<>();
+        folders.add(remotePath);
+        while (!folders.isEmpty()) {
+            RemoteOperationResult result =
+                    readFolder(client, folders.poll(), folders);
+            if (!result.isSuccess()) {
+                return result;
+            }
+        }
+        return new RemoteOperationResult(RemoteOperationResult.ResultCode.OK);
+    }
+
+    /**
+     * Read the given folder.
+     *
+     * @param client  ownCloud client
+     * @param folder  Remote path of the folder
+     * @param folders Folders to read, the subfolders are added to it in
+     *                recursive mode
+     * @return Operation result
+     */
+    private RemoteOperationResult readFolder(final OwnCloudClient client,
+                                             final String folder,
+                                             final Deque<String> folders) {
+        PropFindMethod propFind = null;
+        try {
+            propFind = new PropFindMethod(client.getWebdavUri()
+                    + WebdavUtils.encodePath(folder),
+                    WebdavUtils.getAllPropSet(), DavConstants.DEPTH_1);
+            int status = client.executeMethod(propFind);
+            if (status != HttpStatus.SC_MULTI_STATUS) {
+                client.exhaustResponse(propFind.getResponseBodyAsStream());
+                return new RemoteOperationResult(false, propFind);
+            }
+            XmlPullParser parser = Xml.newPullParser();
+            parser.setFeature(XmlPullParser.FEATURE_PROCESS_NAMESPACES, true);
+            try (InputStream in = propFind.getResponseBodyAsStream()) {
+                parser.setInput(in, null);
+                parse(parser, folder, client.getWebdavUri().getPath(),
+                        folders);
+            }
+            return new RemoteOperationResult(true, propFind);
+        } catch (IOException | XmlPullParserException e) {
+            return new RemoteOperationResult(e);
+        } finally {
+            if (propFind != null) {
+                propFind.releaseConnection();
+            }
+        }
+    }
+
+    /**
+     * Parse the multistatus response of the given folder.
+     *
+     * @param parser  Parser set on the response body
+     * @param folder  Remote path of the folder
+     * @param davPath Path of the WebDAV endpoint
+     * @param folders Folders to read, the subfolders are added to it in
+     *                recursive mode
+     * @throws IOException            An error occurred while reading the body
+     * @throws XmlPullParserException The response body is not valid
+     */
+    final void parse(final XmlPullParser parser, final String folder,
+                     final String davPath, final Deque<String> folders)
+            throws IOException, XmlPullParserException {
+        StringBuilder text = new StringBuilder();
+        String href = null;
+        String status = null;
+        Map<String, String> props = new HashMap<>();
+        Map<String, String> foundProps = new HashMap<>();
+        boolean collection = false;
+        boolean foundCollection = false;
+        int event = parser.getEventType();
+        while (event != XmlPullParser.END_DOCUMENT) {
+            boolean dav = DAV_NAMESPACE.equals(parser.getNamespace());
+            if (event == XmlPullParser.START_TAG && dav) {
+                text.setLength(0);
+                switch (parser.getName()) {
+                    case RESPONSE:
+                        href = null;
+                        foundProps.clear();
+                        foundCollection = false;
+                        break;
+                    case PROPSTAT:
+                        status = null;
+                        props.clear();
+                        collection = false;
+                        break;
+                    case COLLECTION:
+                        collection = true;
+                        break;
+                    default:
+                        break;
+                }
+            } else if (event == XmlPullParser.TEXT) {
+                text.append(parser.getText());
+            } else if (event == XmlPullParser.END_TAG && dav) {
+                switch (parser.getName()) {
+                    case HREF:
+                        href = text.toString().trim();
+                        break;
+                    case STATUS:
+                        status = text.toString();
+                        break;
+                    case PROPSTAT:
+                        // The missing properties are listed with a 404 status
+                        if (status != null && status.contains(" 200 ")) {
+                            foundProps.putAll(props);
+                            foundCollection |= collection;
+                        }
+                        break;
+                    case RESPONSE:
+                        if (href != null) {
+                            onResponse(href, foundProps, foundCollection,
+                                    folder, davPath, folders);
+                        }
+                        break;
+                    case ETAG:
+                    case LAST_MODIFIED:
+                    case CONTENT_LENGTH:
+                    case CONTENT_TYPE:
+                    case CREATION_DATE:
+                        props.put(parser.getName(), text.toString().trim());
+                        break;
+                    default:
+                        break;
+                }
+            }
+            event = parser.next();
+        }
+    }
+
+    /**
+     * Build the remote file of a parsed response and give it to the listener.
+     *
+     * @param href       Href of the response
+     * @param props      Properties found for the entry
+     * @param collection true if the entry is a folder
+     * @param folder     Remote path of the folder being read
+     * @param davPath    Path of the WebDAV endpoint
+     * @param folders    Folders to read, the subfolders are added to it in
+     *                   recursive mode
+     */
+    private void onResponse(final String href, final Map<String, String> props,
+                            final boolean collection, final String folder,
+                            final String davPath, final Deque<String> folders) {
+        String path = decodePath(href);
+        int davIndex = path.indexOf(davPath);
+        if (davIndex != -1) {
+            path = path.substring(davIndex + davPath.length());
+        }
+        if (path.equals(folder)
+                || (path + FileUtils.PATH_SEPARATOR).equals(folder)) {
+            // The folder itself
+            return;
+        }
+        if (collection) {
+            if (recursive) {
+                folders.add(path);
+            }
+            return;
+        }
+        final RemoteFile remoteFile = new RemoteFile(path);
+        remoteFile.setMimeType(props.get(CONTENT_TYPE));
+        String etag = props.get(ETAG);
+        if (etag != null && etag.length() > 1 && etag.startsWith("\"")) {
+            etag = etag.substring(1, etag.length() - 1);
+        }
+        remoteFile.setEtag(etag);
+        remoteFile.setLength(parseLength(props.get(CONTENT_LENGTH)));
+        Date modified = parseDate(props.get(LAST_MODIFIED));
+        if (modified != null) {
+            remoteFile.setModifiedTimestamp(modified.getTime());
+        }
+        Date created = parseDate(props.get(CREATION_DATE));
+        if (created != null) {
+            remoteFile.setCreationTimestamp(created.getTime());
+        }
+        if (handler == null) {
+            listener.onRemoteFile(this, remoteFile);
+        } else {
+            handler.post(() -> listener.onRemoteFile(this, remoteFile));
+        }
+    }
+
+    /**
+     * Decode the percent-encoded characters of the given href. Unlike in a
+     * query, a "+" stands for itself in a path.
+     *
+     * @param href Href given by the server
+     * @return Decoded path, the href itself if it is not validly encoded
+     */
+    private static String decodePath(final String href) {
+        try {
+            return URLDecoder.decode(href.replace("+", "%2B"), "UTF-8");
+        } catch (IllegalArgumentException | UnsupportedEncodingException e) {
+            // Invalid escape sequence, keep the href as it is
+            return href;
+        }
+    }
+
+    /**
+     * @param length Content length given by the server, null if missing
+     * @return Parsed content length, 0 if the length is missing or cannot be
+     * parsed
+     */
+    private static long parseLength(final String length) {
+        if (length == null || length.isEmpty()) {
+            return 0;
+        }
+        try {
+            return Long.parseLong(length.trim());
+        } catch (NumberFormatException e) {
+            // Unknown length, as with the non-streaming listing
+            return 0;
+        }
+    }
+
+    /**
+     * @param date Date given by the server, null if missing
+     * @return Parsed date, null if the date is missing or cannot be parsed
+     */
+    private static Date parseDate(final String date) {
+        if (date == null || date.isEmpty()) {
+            return null;
+        }
+        return WebdavUtils.parseResponseDate(date);
+    }
+}
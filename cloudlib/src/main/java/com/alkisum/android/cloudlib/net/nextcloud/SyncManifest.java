@@ -0,0 +1,216 @@
+package com.alkisum.android.cloudlib.net.nextcloud;
+
+import android.util.Log;
+
+import com.alkisum.android.cloudlib.utils.IoUtils;
+import com.owncloud.android.lib.resources.files.model.RemoteFile;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Manifest persisting the metadata of the remote files synchronised during
+ * the previous operations, used to skip the files that have not changed.
+ *
+ * @author Alkisum
+ * @version 1.9
+ * @since 1.9
+ */
+final class SyncManifest {
+
+    /**
+     * Log tag.
+     */
+    private static final String TAG = "SyncManifest";
+
+    /**
+     * JSON key for the remote file ETag.
+     */
+    private static final String KEY_ETAG = "etag";
+
+    /**
+     * JSON key for the remote file modified timestamp.
+     */
+    private static final String KEY_MODIFIED = "modified";
+
+    /**
+     * JSON key for the remote file size.
+     */
+    private static final String KEY_SIZE = "size";
+
+    /**
+     * JSON key for the hash of the file content.
+     */
+    private static final String KEY_HASH = "hash";
+
+    /**
+     * File storing the manifest.
+     */
+    private final File file;
+
+    /**
+     * Manifest entries, the keys are the remote paths.
+     */
+    private final JSONObject entries;
+
+    /**
+     * SyncManifest constructor.
+     *
+     * @param file    File storing the manifest
+     * @param entries Manifest entries
+     */
+    private SyncManifest(final File file, final JSONObject entries) {
+        this.file = file;
+        this.entries = entries;
+    }
+
+    /**
+     * Load the manifest from the given file. An empty manifest is returned if
+     * the file does not exist or cannot be read, all the files are then
+     * considered as new.
+     *
+     * @param file File storing the manifest
+     * @return Manifest
+     */
+    static SyncManifest load(final File file) {
+        if (!file.exists()) {
+            return new SyncManifest(file, new JSONObject());
+        }
+        try {
+            return new SyncManifest(file,
+                    new JSONObject(IoUtils.readText(file)));
+        } catch (IOException | JSONException e) {
+            Log.e(TAG, "Cannot read manifest, starting from scratch", e);
+            return new SyncManifest(file, new JSONObject());
+        }
+    }
+
+    /**
+     * Check if the manifest contains an entry for the given remote path.
+     *
+     * @param remotePath Remote path
+     * @return true if an entry exists, false otherwise
+     */
+    boolean contains(final String remotePath) {
+        return entries.has(remotePath);
+    }
+
+    /**
+     * Check if the given remote file has not changed since it was added to
+     * the manifest. The ETag is compared when available, the modified
+     * timestamp and the size otherwise.
+     *
+     * @param remoteFile Remote file
+     * @return true if the file has not changed, false otherwise
+     */
+    boolean isUnchanged(final RemoteFile remoteFile) {
+        JSONObject entry = entries.optJSONObject(remoteFile.getRemotePath());
+        if (entry == null) {
+            return false;
+        }
+        String etag = remoteFile.getEtag();
+        if (etag != null && !etag.isEmpty()) {
+            return etag.equals(entry.optString(KEY_ETAG, null));
+        }
+        return remoteFile.getModifiedTimestamp() == entry.optLong(KEY_MODIFIED)
+                && remoteFile.getLength() == entry.optLong(KEY_SIZE, -1);
+    }
+
+    /**
+     * Get the content hash stored for the given remote path, provided the
+     * remote file still has the ETag it had when the hash was stored.
+     *
+     * @param remotePath Remote path
+     * @param etag       Current ETag of the remote file
+     * @return Content hash, null if unknown or if the remote file changed
+     */
+    String getHash(final String remotePath, final String etag) {
+        JSONObject entry = entries.optJSONObject(remotePath);
+        if (entry == null || etag == null || etag.isEmpty()
+                || !etag.equals(entry.optString(KEY_ETAG, null))) {
+            return null;
+        }
+        return entry.optString(KEY_HASH, null);
+    }
+
+    /**
+     * Add or replace the entry of the given remote file along with the hash
+     * of its content.
+     *
+     * @param remoteFile Remote file
+     * @param hash       Content hash
+     */
+    void put(final RemoteFile remoteFile, final String hash) {
+        put(remoteFile);
+        JSONObject entry = entries.optJSONObject(remoteFile.getRemotePath());
+        try {
+            if (entry != null) {
+                entry.put(KEY_HASH, hash);
+            }
+        } catch (JSONException e) {
+            Log.e(TAG, "Cannot add hash of " + remoteFile.getRemotePath(), e);
+        }
+    }
+
+    /**
+     * Add or replace the entry of the given remote file. The content hash
+     * stored previously for the file is discarded.
+     *
+     * @param remoteFile Remote file
+     */
+    void put(final RemoteFile remoteFile) {
+        try {
+            JSONObject entry = new JSONObject();
+            entry.put(KEY_ETAG, remoteFile.getEtag());
+            entry.put(KEY_MODIFIED, remoteFile.getModifiedTimestamp());
+            entry.put(KEY_SIZE, remoteFile.getLength());
+            entries.put(remoteFile.getRemotePath(), entry);
+        } catch (JSONException e) {
+            Log.e(TAG, "Cannot add " + remoteFile.getRemotePath(), e);
+        }
+    }
+
+    /**
+     * Remove the entry of the given remote path.
+     *
+     * @param remotePath Remote path
+     */
+    void remove(final String remotePath) {
+        entries.remove(remotePath);
+    }
+
+    /**
+     * Get the remote paths of the entries located in the given folder.
+     *
+     * @param folderPath Remote folder path, ending with a separator
+     * @return Remote paths
+     */
+    List<String> getRemotePaths(final String folderPath) {
+        List<String> remotePaths = new ArrayList<>();
+        Iterator<String> keys = entries.keys();
+        while (keys.hasNext()) {
+            String remotePath = keys.next();
+            if (remotePath.startsWith(folderPath)) {
+                remotePaths.add(remotePath);
+            }
+        }
+        return remotePaths;
+    }
+
+    /**
+     * Save the manifest. The manifest is written to a temporary file first
+     * and then renamed, an interrupted save does not corrupt the previous
+     * manifest.
+     *
+     * @throws IOException An error occurred while writing the manifest
+     */
+    void save() throws IOException {
+        IoUtils.writeText(file, entries.toString());
+    }
+}
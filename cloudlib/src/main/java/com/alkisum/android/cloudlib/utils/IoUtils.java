@@ -0,0 +1,213 @@
+package com.alkisum.android.cloudlib.utils;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Utility class of file operations shared by the caches, the manifest and
+ * the remote operations: hashing, reading and writing text, and writing files
+ * atomically.
+ *
+ * @author Alkisum
+ * @version 1.9
+ * @since 1.9
+ */
+public final class IoUtils {
+
+    /**
+     * Charset of the text files.
+     */
+    public static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /**
+     * Algorithm used to hash the content.
+     */
+    private static final String HASH_ALGORITHM = "SHA-1";
+
+    /**
+     * Size of the buffers used to read the files.
+     */
+    private static final int BUFFER_SIZE = 8192;
+
+    /**
+     * Extension of the temporary files written before being renamed.
+     */
+    private static final String TMP_EXT = ".tmp";
+
+    /**
+     * IoUtils constructor.
+     */
+    private IoUtils() {
+
+    }
+
+    /**
+     * Hash the given content.
+     *
+     * @param content Content to hash
+     * @return SHA-1 hash as an hexadecimal string
+     */
+    public static String sha1(final byte[] content) {
+        MessageDigest digest = newDigest();
+        return toHex(digest.digest(content));
+    }
+
+    /**
+     * Hash the content of the given file. The file is read through a small
+     * buffer, it is never loaded into memory as a whole.
+     *
+     * @param file File to hash
+     * @return SHA-1 hash as an hexadecimal string
+     * @throws IOException An error occurred while reading the file
+     */
+    public static String sha1(final File file) throws IOException {
+        MessageDigest digest = newDigest();
+        try (InputStream in = new FileInputStream(file)) {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int read = in.read(buffer);
+            while (read != -1) {
+                digest.update(buffer, 0, read);
+                read = in.read(buffer);
+            }
+        }
+        return toHex(digest.digest());
+    }
+
+    /**
+     * Read the whole content of the given file.
+     *
+     * @param file File to read
+     * @return File content
+     * @throws IOException An error occurred while reading the file
+     */
+    public static byte[] readBytes(final File file) throws IOException {
+        long length = file.length();
+        if (length > Integer.MAX_VALUE) {
+            throw new IOException(file.getName() + " is too large to be read");
+        }
+        // The file can change while it is read, read until its end
+        ByteArrayOutputStream out = new ByteArrayOutputStream((int) length);
+        try (InputStream in = new FileInputStream(file)) {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int read = in.read(buffer);
+            while (read != -1) {
+                out.write(buffer, 0, read);
+                read = in.read(buffer);
+            }
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Read the whole content of the given UTF-8 text file.
+     *
+     * @param file File to read
+     * @return File content
+     * @throws IOException An error occurred while reading the file
+     */
+    public static String readText(final File file) throws IOException {
+        try (Reader reader = new InputStreamReader(
+                new FileInputStream(file), UTF_8)) {
+            StringBuilder sb = new StringBuilder();
+            char[] buffer = new char[BUFFER_SIZE];
+            int read = reader.read(buffer);
+            while (read != -1) {
+                sb.append(buffer, 0, read);
+                read = reader.read(buffer);
+            }
+            return sb.toString();
+        }
+    }
+
+    /**
+     * Write the given text into the given file as UTF-8, atomically.
+     *
+     * @param file File to write
+     * @param text Text to write
+     * @throws IOException An error occurred while writing the file
+     */
+    public static void writeText(final File file, final String text)
+            throws IOException {
+        write(file, out -> {
+            Writer writer = new OutputStreamWriter(out, UTF_8);
+            writer.write(text);
+            writer.flush();
+        });
+    }
+
+    /**
+     * Write the given file atomically: the content is written to a temporary
+     * file first, which is then renamed. An interrupted write does not
+     * corrupt the previous content of the file.
+     *
+     * @param file    File to write
+     * @param content Writer of the content
+     * @throws IOException An error occurred while writing the file
+     */
+    public static void write(final File file, final ContentWriter content)
+            throws IOException {
+        File tmpFile = new File(file.getPath() + TMP_EXT);
+        try (OutputStream out = new BufferedOutputStream(
+                new FileOutputStream(tmpFile))) {
+            content.writeTo(out);
+        }
+        if (!tmpFile.renameTo(file)) {
+            throw new IOException("Cannot rename " + tmpFile + " to " + file);
+        }
+    }
+
+    /**
+     * @return New digest computing SHA-1 hashes
+     */
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance(HASH_ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            // SHA-1 is available on every platform
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Convert the given bytes to an hexadecimal string.
+     *
+     * @param bytes Bytes to convert
+     * @return Hexadecimal string
+     */
+    private static String toHex(final byte[] bytes) {
+        StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16));
+            sb.append(Character.forDigit(b & 0xF, 16));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Interface for the writers of a file content.
+     */
+    public interface ContentWriter {
+
+        /**
+         * Write the content into the given stream. The stream is closed by
+         * the caller.
+         *
+         * @param out Stream where to write the content
+         * @throws IOException An error occurred while writing the content
+         */
+        void writeTo(OutputStream out) throws IOException;
+    }
+}
@@ -0,0 +1,175 @@
+package com.alkisum.android.cloudlib.cache;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for DiskCache.
+ *
+ * @author Alkisum
+ * @version 1.9
+ * @since 1.9
+ */
+public class DiskCacheTest {
+
+    /**
+     * Temporary folder holding the cache directory.
+     */
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Cache directory.
+     */
+    private File directory;
+
+    /**
+     * Create the cache directory.
+     *
+     * @throws IOException The directory cannot be created
+     */
+    @Before
+    public final void setUp() throws IOException {
+        directory = folder.newFolder("cache");
+    }
+
+    /**
+     * The least recently used files are evicted once the cache exceeds its
+     * budget, the file just added is kept.
+     *
+     * @throws IOException The files cannot be written
+     */
+    @Test
+    public final void putEvictsLeastRecentlyUsedFiles() throws IOException {
+        DiskCache cache = new DiskCache(directory, 250);
+        put(cache, "/a.txt", 100);
+        put(cache, "/b.txt", 100);
+        assertNotNull(cache.get("/a.txt", "a.txt", "etag"));
+        put(cache, "/c.txt", 100);
+
+        assertEquals(200, cache.size());
+        assertNotNull(cache.get("/a.txt", "a.txt", "etag"));
+        assertNull(cache.get("/b.txt", "b.txt", "etag"));
+        assertFalse(cache.getFile("/b.txt", "b.txt").exists());
+        assertNotNull(cache.get("/c.txt", "c.txt", "etag"));
+    }
+
+    /**
+     * A file larger than the budget evicts all the other files but is kept.
+     *
+     * @throws IOException The files cannot be written
+     */
+    @Test
+    public final void putKeepsFileLargerThanBudget() throws IOException {
+        DiskCache cache = new DiskCache(directory, 100);
+        put(cache, "/a.txt", 50);
+        put(cache, "/b.txt", 50);
+        put(cache, "/c.txt", 300);
+
+        assertEquals(300, cache.size());
+        assertNull(cache.get("/a.txt", "a.txt", "etag"));
+        assertNull(cache.get("/b.txt", "b.txt", "etag"));
+        assertNotNull(cache.get("/c.txt", "c.txt", "etag"));
+    }
+
+    /**
+     * Putting a new version of a cached file keeps the downloaded file and
+     * replaces its size.
+     *
+     * @throws IOException The files cannot be written
+     */
+    @Test
+    public final void putReplacesExistingEntry() throws IOException {
+        DiskCache cache = new DiskCache(directory, 1000);
+        put(cache, "/a.txt", 100);
+        write(cache.getFile("/a.txt", "a.txt"), 40);
+        cache.put("/a.txt", "a.txt", "etag2");
+
+        assertEquals(40, cache.size());
+        assertNull(cache.get("/a.txt", "a.txt", "etag"));
+        File file = cache.get("/a.txt", "a.txt", "etag2");
+        assertNotNull(file);
+        assertTrue(file.exists());
+        assertEquals(40, file.length());
+    }
+
+    /**
+     * The index saved by a cache is loaded by a new cache on the same
+     * directory, and the files that are not in the index are deleted.
+     *
+     * @throws IOException The files cannot be written
+     */
+    @Test
+    public final void flushPersistsIndex() throws IOException {
+        DiskCache cache = new DiskCache(directory, 1000);
+        put(cache, "/a.txt", 100);
+        cache.flush();
+        File orphan = new File(directory, "orphan.txt");
+        write(orphan, 10);
+
+        DiskCache reloaded = new DiskCache(directory, 1000);
+        assertEquals(100, reloaded.size());
+        assertNotNull(reloaded.get("/a.txt", "a.txt", "etag"));
+        assertFalse(orphan.exists());
+    }
+
+    /**
+     * Clearing the cache deletes all the cached files.
+     *
+     * @throws IOException The files cannot be written
+     */
+    @Test
+    public final void clearDeletesFiles() throws IOException {
+        DiskCache cache = new DiskCache(directory, 1000);
+        put(cache, "/a.txt", 100);
+        put(cache, "/b.txt", 100);
+        cache.clear();
+
+        assertEquals(0, cache.size());
+        assertFalse(cache.getFile("/a.txt", "a.txt").exists());
+        assertFalse(cache.getFile("/b.txt", "b.txt").exists());
+    }
+
+    /**
+     * Write a file of the given size at its location in the cache and add it
+     * to the cache with the "etag" ETag.
+     *
+     * @param cache      Cache
+     * @param remotePath Remote path, the file name is taken from it
+     * @param size       File size in bytes
+     * @throws IOException The file cannot be written
+     */
+    private static void put(final DiskCache cache, final String remotePath,
+                            final int size) throws IOException {
+        String fileName = remotePath.substring(1);
+        write(cache.getFile(remotePath, fileName), size);
+        cache.put(remotePath, fileName, "etag");
+    }
+
+    /**
+     * Write a file of the given size.
+     *
+     * @param file File to write
+     * @param size File size in bytes
+     * @throws IOException The file cannot be written
+     */
+    private static void write(final File file, final int size)
+            throws IOException {
+        try (OutputStream out = new FileOutputStream(file)) {
+            out.write(new byte[size]);
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.alkisum.android.cloudlib.cache;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Tests for JsonParseCache.
+ *
+ * @author Alkisum
+ * @version 1.9
+ * @since 1.9
+ */
+public class JsonParseCacheTest {
+
+    /**
+     * Each hit gives a new copy, the changes made to the stored object or to
+     * a copy, nested values included, are not seen by the next hits.
+     *
+     * @throws Exception The JSON objects cannot be built
+     */
+    @Test
+    public final void copiesAreIsolated() throws Exception {
+        JsonParseCache cache = new JsonParseCache(2);
+        JSONObject jsonObject = new JSONObject().put("name", "Run")
+                .put("points", new JSONArray().put(new JSONObject()
+                        .put("lat", 1.5)));
+        cache.put("hash", jsonObject);
+        jsonObject.put("name", "Walk");
+
+        JSONObject first = cache.get("hash");
+        assertEquals("Run", first.getString("name"));
+        first.getJSONArray("points").getJSONObject(0).put("lat", 2.5);
+        first.getJSONArray("points").put(3);
+
+        JSONObject second = cache.get("hash");
+        assertNotSame(first, second);
+        JSONArray points = second.getJSONArray("points");
+        assertEquals(1, points.length());
+        assertEquals(1.5, points.getJSONObject(0).getDouble("lat"), 0);
+    }
+
+    /**
+     * The least recently used entry is evicted once the cache is full.
+     *
+     * @throws Exception The JSON objects cannot be built
+     */
+    @Test
+    public final void putEvictsLeastRecentlyUsedEntry() throws Exception {
+        JsonParseCache cache = new JsonParseCache(2);
+        cache.put("a", new JSONObject().put("id", "a"));
+        cache.put("b", new JSONObject().put("id", "b"));
+        assertNotNull(cache.get("a"));
+        cache.put("c", new JSONObject().put("id", "c"));
+
+        assertEquals(2, cache.size());
+        assertEquals("a", cache.get("a").getString("id"));
+        assertNull(cache.get("b"));
+        assertEquals("c", cache.get("c").getString("id"));
+    }
+
+    /**
+     * Null objects are not stored, clearing the cache removes all the
+     * entries.
+     *
+     * @throws Exception The JSON objects cannot be built
+     */
+    @Test
+    public final void clearRemovesEntries() throws Exception {
+        JsonParseCache cache = new JsonParseCache(2);
+        cache.put("null", null);
+        cache.put("a", new JSONObject().put("id", "a"));
+        assertEquals(1, cache.size());
+        cache.clear();
+
+        assertEquals(0, cache.size());
+        assertNull(cache.get("a"));
+    }
+
+    /**
+     * At least one entry must be cached.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public final void constructorRejectsEmptyCache() {
+        new JsonParseCache(0);
+    }
+}
@@ -0,0 +1,268 @@
+package com.alkisum.android.cloudlib.cache;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for SnapshotCache.
+ *
+ * @author Alkisum
+ * @version 1.9
+ * @since 1.9
+ */
+public class SnapshotCacheTest {
+
+    /**
+     * Temporary folder holding the snapshot and the source files.
+     */
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * File storing the snapshot.
+     */
+    private File snapshot;
+
+    /**
+     * Source file whose content is cached.
+     */
+    private File source;
+
+    /**
+     * Create the source file.
+     *
+     * @throws IOException The file cannot be written
+     */
+    @Before
+    public final void setUp() throws IOException {
+        snapshot = new File(folder.getRoot(), "cache/snapshot.bin");
+        source = folder.newFile("source.json");
+        write(source, "content");
+    }
+
+    /**
+     * The TXT content saved by a cache is read by a new cache.
+     *
+     * @throws IOException The snapshot cannot be saved
+     */
+    @Test
+    public final void textSurvivesReload() throws IOException {
+        SnapshotCache cache = new SnapshotCache(snapshot);
+        cache.putText(source, "Première ligne\nsecond line");
+        cache.save();
+
+        SnapshotCache reloaded = new SnapshotCache(snapshot);
+        assertEquals("Première ligne\nsecond line", reloaded.getText(source));
+        assertNull(reloaded.getJsonObject(source));
+    }
+
+    /**
+     * The JSON object saved by a cache is rebuilt by a new cache with all its
+     * values.
+     *
+     * @throws Exception The snapshot cannot be saved
+     */
+    @Test
+    public final void jsonObjectSurvivesReload() throws Exception {
+        JSONObject jsonObject = new JSONObject();
+        jsonObject.put("name", "Run €");
+        jsonObject.put("count", 42);
+        jsonObject.put("time", 1500000000000L);
+        jsonObject.put("distance", 12.5);
+        jsonObject.put("done", true);
+        jsonObject.put("note", JSONObject.NULL);
+        jsonObject.put("points", new JSONArray().put(1).put("two")
+                .put(new JSONObject().put("lat", 1.5)));
+        SnapshotCache cache = new SnapshotCache(snapshot);
+        cache.putJsonObject(source, jsonObject);
+        cache.save();
+
+        JSONObject read = new SnapshotCache(snapshot).getJsonObject(source);
+        assertNotNull(read);
+        assertEquals("Run €", read.getString("name"));
+        assertEquals(42, read.getInt("count"));
+        assertEquals(1500000000000L, read.getLong("time"));
+        assertEquals(12.5, read.getDouble("distance"), 0);
+        assertTrue(read.getBoolean("done"));
+        assertTrue(read.isNull("note"));
+        JSONArray points = read.getJSONArray("points");
+        assertEquals(3, points.length());
+        assertEquals(1, points.getInt(0));
+        assertEquals("two", points.getString(1));
+        assertEquals(1.5, points.getJSONObject(2).getDouble("lat"), 0);
+    }
+
+    /**
+     * Each call gives a new JSON object, the changes made to it are not seen
+     * by the next calls.
+     *
+     * @throws Exception The JSON object cannot be built
+     */
+    @Test
+    public final void jsonObjectIsRebuiltOnEachCall() throws Exception {
+        SnapshotCache cache = new SnapshotCache(snapshot);
+        cache.putJsonObject(source, new JSONObject().put("name", "Run"));
+        cache.getJsonObject(source).put("name", "Walk");
+
+        assertEquals("Run", cache.getJsonObject(source).getString("name"));
+    }
+
+    /**
+     * An entry is ignored once the size of its file changed.
+     *
+     * @throws IOException The files cannot be written
+     */
+    @Test
+    public final void entryIsIgnoredWhenSizeChanges() throws IOException {
+        SnapshotCache cache = new SnapshotCache(snapshot);
+        cache.putText(source, "content");
+        long modified = source.lastModified();
+        write(source, "new content");
+        assertTrue(source.setLastModified(modified));
+
+        assertNull(cache.getText(source));
+    }
+
+    /**
+     * An entry is ignored once the modification time of its file changed,
+     * and dropped when the snapshot is saved.
+     *
+     * @throws IOException The snapshot cannot be saved
+     */
+    @Test
+    public final void entryIsIgnoredWhenModifiedTimeChanges()
+            throws IOException {
+        SnapshotCache cache = new SnapshotCache(snapshot);
+        cache.putText(source, "content");
+        cache.save();
+        assertTrue(source.setLastModified(source.lastModified() - 10000));
+
+        SnapshotCache reloaded = new SnapshotCache(snapshot);
+        assertNull(reloaded.getText(source));
+        reloaded.save();
+        assertTrue(source.setLastModified(source.lastModified() + 10000));
+        assertNull(new SnapshotCache(snapshot).getText(source));
+    }
+
+    /**
+     * A corrupted snapshot gives an empty cache.
+     *
+     * @throws IOException The snapshot cannot be written
+     */
+    @Test
+    public final void corruptedSnapshotIsIgnored() throws IOException {
+        assertTrue(snapshot.getParentFile().mkdirs());
+        write(snapshot, "not a snapshot");
+
+        assertNull(new SnapshotCache(snapshot).getText(source));
+    }
+
+    /**
+     * A snapshot with a corrupted payload length gives an empty cache, which
+     * can still be used.
+     *
+     * @throws IOException The snapshot cannot be written
+     */
+    @Test
+    public final void corruptedEntryLengthIsIgnored() throws IOException {
+        int[] lengths = {-1, Integer.MAX_VALUE};
+        for (int length : lengths) {
+            writeSnapshot(1, length);
+
+            SnapshotCache cache = new SnapshotCache(snapshot);
+            assertNull(cache.getText(source));
+            cache.putText(source, "content");
+            assertEquals("content", cache.getText(source));
+        }
+    }
+
+    /**
+     * A snapshot with a corrupted entry count gives an empty cache, the same
+     * snapshot with a valid count is read.
+     *
+     * @throws IOException The snapshot cannot be written
+     */
+    @Test
+    public final void corruptedEntryCountIsIgnored() throws IOException {
+        writeSnapshot(1, 7);
+        assertEquals("content", new SnapshotCache(snapshot).getText(source));
+        writeSnapshot(Integer.MAX_VALUE, 7);
+
+        assertNull(new SnapshotCache(snapshot).getText(source));
+    }
+
+    /**
+     * Clearing the cache deletes the snapshot.
+     *
+     * @throws IOException The snapshot cannot be saved
+     */
+    @Test
+    public final void clearDeletesSnapshot() throws IOException {
+        SnapshotCache cache = new SnapshotCache(snapshot);
+        cache.putText(source, "content");
+        cache.save();
+        assertTrue(snapshot.exists());
+        cache.clear();
+
+        assertFalse(snapshot.exists());
+        assertNull(cache.getText(source));
+    }
+
+    /**
+     * Write a snapshot holding one TXT entry for the source file, with the
+     * given entry count and payload length.
+     *
+     * @param count         Entry count
+     * @param payloadLength Payload length
+     * @throws IOException The snapshot cannot be written
+     */
+    private void writeSnapshot(final int count, final int payloadLength)
+            throws IOException {
+        File parent = snapshot.getParentFile();
+        assertTrue(parent.exists() || parent.mkdirs());
+        byte[] path = source.getAbsolutePath().getBytes("UTF-8");
+        try (DataOutputStream out = new DataOutputStream(
+                new FileOutputStream(snapshot))) {
+            out.writeInt(0x434c5350);
+            out.writeInt(1);
+            out.writeInt(count);
+            out.writeInt(path.length);
+            out.write(path);
+            out.writeLong(source.length());
+            out.writeLong(source.lastModified());
+            out.writeByte(1);
+            out.writeInt(payloadLength);
+            out.write("content".getBytes("UTF-8"));
+        }
+    }
+
+    /**
+     * Write a UTF-8 file with the given content.
+     *
+     * @param file    File to write
+     * @param content File content
+     * @throws IOException The file cannot be written
+     */
+    private static void write(final File file, final String content)
+            throws IOException {
+        try (OutputStream out = new FileOutputStream(file)) {
+            out.write(content.getBytes("UTF-8"));
+        }
+    }
+}
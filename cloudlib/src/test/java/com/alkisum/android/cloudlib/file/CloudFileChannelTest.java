@@ -0,0 +1,158 @@
+package com.alkisum.android.cloudlib.file;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for CloudFileChannel.
+ *
+ * @author Alkisum
+ * @version 1.9
+ * @since 1.9
+ */
+public class CloudFileChannelTest {
+
+    /**
+     * Maximum time in seconds to wait for the producer thread.
+     */
+    private static final long TIMEOUT = 5;
+
+    /**
+     * The files are taken in the order they are put, the channel is drained
+     * once closed and empty.
+     *
+     * @throws Exception The files cannot be put
+     */
+    @Test
+    public final void pollKeepsOrder() throws Exception {
+        CloudFileChannel channel = new CloudFileChannel(3);
+        CloudFile first = newFile("first");
+        CloudFile second = newFile("second");
+        channel.put(first);
+        channel.put(second);
+        channel.close();
+
+        assertFalse(channel.isDrained());
+        assertSame(first, channel.peek());
+        assertSame(first, channel.poll());
+        assertSame(second, channel.poll());
+        assertNull(channel.poll());
+        assertTrue(channel.isDrained());
+    }
+
+    /**
+     * The producer waits while the channel is full and resumes when a file
+     * is taken.
+     *
+     * @throws Exception The producer failed
+     */
+    @Test
+    public final void putWaitsWhileFull() throws Exception {
+        CloudFileChannel channel = new CloudFileChannel(1);
+        channel.put(newFile("first"));
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(1);
+        AtomicReference<Exception> error = new AtomicReference<>();
+        Thread producer = new Thread(() -> {
+            try {
+                started.countDown();
+                channel.put(newFile("second"));
+            } catch (Exception e) {
+                error.set(e);
+            }
+            done.countDown();
+        });
+        producer.start();
+        started.await();
+
+        assertFalse(done.await(100, TimeUnit.MILLISECONDS));
+        assertEquals("first", channel.poll().getName());
+        assertTrue(done.await(TIMEOUT, TimeUnit.SECONDS));
+        assertNull(error.get());
+        assertEquals("second", channel.poll().getName());
+    }
+
+    /**
+     * A failed channel releases the waiting producer with an exception and
+     * keeps the failure.
+     *
+     * @throws Exception The producer thread cannot be joined
+     */
+    @Test
+    public final void failReleasesProducer() throws Exception {
+        CloudFileChannel channel = new CloudFileChannel(1);
+        channel.put(newFile("first"));
+        AtomicReference<Exception> error = new AtomicReference<>();
+        Thread producer = new Thread(() -> {
+            try {
+                channel.put(newFile("second"));
+            } catch (Exception e) {
+                error.set(e);
+            }
+        });
+        producer.start();
+        IOException failure = new IOException("Upload failed");
+        channel.fail(failure);
+        producer.join(TimeUnit.SECONDS.toMillis(TIMEOUT));
+
+        assertTrue(error.get() instanceof IOException);
+        assertSame(failure, error.get().getCause());
+        assertSame(failure, channel.getFailure());
+    }
+
+    /**
+     * A file cannot be put into a closed channel.
+     *
+     * @throws Exception The channel cannot be used
+     */
+    @Test
+    public final void putFailsWhenClosed() throws Exception {
+        CloudFileChannel channel = new CloudFileChannel(1);
+        channel.close();
+        try {
+            channel.put(newFile("file"));
+            fail("The file has been put into a closed channel");
+        } catch (IOException e) {
+            assertNull(channel.getFailure());
+        }
+    }
+
+    /**
+     * The listener is notified of each file put, of the closing and of the
+     * failure.
+     *
+     * @throws Exception The files cannot be put
+     */
+    @Test
+    public final void listenerIsNotified() throws Exception {
+        CloudFileChannel channel = new CloudFileChannel(2);
+        AtomicInteger notifications = new AtomicInteger();
+        channel.setListener(notifications::incrementAndGet);
+        channel.put(newFile("first"));
+        channel.put(newFile("second"));
+        channel.close();
+        channel.fail(new IOException());
+
+        assertEquals(4, notifications.get());
+    }
+
+    /**
+     * @param name File name
+     * @return Cloud file without file object
+     */
+    private static CloudFile newFile(final String name) {
+        return new CloudFile(name, null, 0, 0);
+    }
+}
@@ -0,0 +1,262 @@
+package com.alkisum.android.cloudlib.file;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for FileTask.
+ *
+ * @author Alkisum
+ * @version 1.9
+ * @since 1.9
+ */
+public class FileTaskTest {
+
+    /**
+     * Maximum time in seconds to wait for the results.
+     */
+    private static final long TIMEOUT = 5;
+
+    /**
+     * The files processed successfully are delivered in the order of the
+     * input files, the failed files are reported with their exception.
+     *
+     * @throws Exception The results have not been delivered
+     */
+    @Test
+    public final void failedFilesDoNotStopOtherFiles() throws Exception {
+        UpperCaseTask task = new UpperCaseTask(
+                Arrays.asList("a", "fail-b", "c", "d", "fail-e", "f"));
+        task.setParallelism(3);
+        task.execute();
+
+        assertTrue(task.done.await(TIMEOUT, TimeUnit.SECONDS));
+        assertNull(task.error);
+        assertEquals(Arrays.asList("A", "C", "D", "F"), task.outputs);
+        assertEquals(Arrays.asList("fail-b", "fail-e"),
+                Arrays.asList(task.failures.keySet().toArray()));
+        assertEquals("fail-b", task.failures.get("fail-b").getMessage());
+    }
+
+    /**
+     * All the files processed successfully give an empty failure map.
+     *
+     * @throws Exception The results have not been delivered
+     */
+    @Test
+    public final void allFilesProcessed() throws Exception {
+        UpperCaseTask task = new UpperCaseTask(Arrays.asList("a", "b", "c"));
+        task.execute();
+
+        assertTrue(task.done.await(TIMEOUT, TimeUnit.SECONDS));
+        assertEquals(Arrays.asList("A", "B", "C"), task.outputs);
+        assertTrue(task.failures.isEmpty());
+    }
+
+    /**
+     * The task fails with the first exception when no file could be
+     * processed, all the files being reported.
+     *
+     * @throws Exception The results have not been delivered
+     */
+    @Test
+    public final void allFilesFailed() throws Exception {
+        UpperCaseTask task = new UpperCaseTask(
+                Arrays.asList("fail-a", "fail-b"));
+        task.execute();
+
+        assertTrue(task.done.await(TIMEOUT, TimeUnit.SECONDS));
+        assertNull(task.outputs);
+        assertSame(task.failures.get("fail-a"), task.error);
+        assertEquals(2, task.failures.size());
+    }
+
+    /**
+     * An error thrown while processing a file is reported as the failure of
+     * this file, the other files are still delivered.
+     *
+     * @throws Exception The results have not been delivered
+     */
+    @Test
+    public final void errorIsReportedAsFailure() throws Exception {
+        UpperCaseTask task = new UpperCaseTask(
+                Arrays.asList("a", "error-b", "c", "error-d"));
+        task.setParallelism(2);
+        task.execute();
+
+        assertTrue(task.done.await(TIMEOUT, TimeUnit.SECONDS));
+        assertEquals(Arrays.asList("A", "C"), task.outputs);
+        Exception failure = task.failures.get("error-b");
+        assertTrue(failure instanceof ExecutionException);
+        assertTrue(failure.getCause() instanceof StackOverflowError);
+        assertTrue(task.failures.containsKey("error-d"));
+    }
+
+    /**
+     * The task fails when an error is thrown for every file.
+     *
+     * @throws Exception The results have not been delivered
+     */
+    @Test
+    public final void errorForAllFilesFailsTask() throws Exception {
+        UpperCaseTask task = new UpperCaseTask(
+                Arrays.asList("error-a", "error-b", "error-c"));
+        task.setParallelism(3);
+        task.execute();
+
+        assertTrue(task.done.await(TIMEOUT, TimeUnit.SECONDS));
+        assertNull(task.outputs);
+        assertTrue(task.error instanceof ExecutionException);
+        assertEquals(3, task.failures.size());
+    }
+
+    /**
+     * Cancelling the task releases a worker waiting for a full channel, the
+     * task is then finished.
+     *
+     * @throws Exception The task has not been cancelled
+     */
+    @Test
+    public final void cancelReleasesBlockedWorker() throws Exception {
+        CloudFileChannel channel = new CloudFileChannel(1);
+        CountDownLatch blocked = new CountDownLatch(1);
+        CountDownLatch cancelled = new CountDownLatch(1);
+        FileTask<String, String> task = new FileTask<String, String>(
+                Arrays.asList("a", "b")) {
+
+            @Override
+            protected String process(final String input) throws Exception {
+                if (channel.peek() != null) {
+                    blocked.countDown();
+                }
+                channel.put(new CloudFile(input, null, 0, 0));
+                return input;
+            }
+
+            @Override
+            protected void onComplete(final List<String> outputs,
+                                      final Map<String, Exception> failures) {
+            }
+
+            @Override
+            protected void onError(final Exception e,
+                                   final Map<String, Exception> failures) {
+            }
+
+            @Override
+            protected void onCancelRequested() {
+                channel.fail(new IOException("Cancelled"));
+            }
+
+            @Override
+            protected void onCancelled() {
+                cancelled.countDown();
+            }
+        };
+        task.setParallelism(1);
+        task.setDeliveryExecutor(Runnable::run);
+        task.execute();
+        assertTrue(blocked.await(TIMEOUT, TimeUnit.SECONDS));
+        task.cancel();
+
+        assertTrue(cancelled.await(TIMEOUT, TimeUnit.SECONDS));
+        assertTrue(channel.getFailure() instanceof IOException);
+    }
+
+    /**
+     * A task cannot be executed twice.
+     */
+    @Test(expected = IllegalStateException.class)
+    public final void executeTwiceFails() {
+        UpperCaseTask task = new UpperCaseTask(
+                Collections.<String>emptyList());
+        task.execute();
+        task.execute();
+    }
+
+    /**
+     * At least one file must be processed at a time.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public final void setParallelismRejectsZero() {
+        new UpperCaseTask(Collections.<String>emptyList()).setParallelism(0);
+    }
+
+    /**
+     * Task converting strings to upper case, the strings starting with
+     * "fail" cannot be processed and the strings starting with "error" throw
+     * an error. The results are delivered on the worker thread.
+     */
+    private static final class UpperCaseTask extends FileTask<String, String> {
+
+        /**
+         * Latch released when the results are delivered.
+         */
+        private final CountDownLatch done = new CountDownLatch(1);
+
+        /**
+         * Delivered outputs, null if the task failed.
+         */
+        private List<String> outputs;
+
+        /**
+         * Delivered failures.
+         */
+        private Map<String, Exception> failures;
+
+        /**
+         * Delivered exception, null if the task completed.
+         */
+        private Exception error;
+
+        /**
+         * UpperCaseTask constructor.
+         *
+         * @param inputs Strings to convert
+         */
+        private UpperCaseTask(final List<String> inputs) {
+            super(inputs);
+            setDeliveryExecutor(Runnable::run);
+        }
+
+        @Override
+        protected String process(final String input) throws Exception {
+            if (input.startsWith("fail")) {
+                throw new IOException(input);
+            }
+            if (input.startsWith("error")) {
+                throw new StackOverflowError(input);
+            }
+            return input.toUpperCase();
+        }
+
+        @Override
+        protected void onComplete(final List<String> outputs,
+                                  final Map<String, Exception> failures) {
+            this.outputs = outputs;
+            this.failures = failures;
+            done.countDown();
+        }
+
+        @Override
+        protected void onError(final Exception e,
+                               final Map<String, Exception> failures) {
+            this.error = e;
+            this.failures = failures;
+            done.countDown();
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.alkisum.android.cloudlib.file.json;
+
+import com.alkisum.android.cloudlib.cache.JsonParseCache;
+import com.alkisum.android.cloudlib.file.CloudFile;
+
+import org.json.JSONObject;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+
+/**
+ * Tests for JsonFileReader.
+ *
+ * @author Alkisum
+ * @version 1.9
+ * @since 1.9
+ */
+public class JsonFileReaderTest {
+
+    /**
+     * Temporary folder holding the test files.
+     */
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Files with the same content share the cache entry, each of them gets
+     * its own JSON object.
+     *
+     * @throws Exception The files cannot be written or read
+     */
+    @Test
+    public final void sameContentIsParsedOnce() throws Exception {
+        JsonParseCache parseCache = new JsonParseCache(4);
+        JsonFileReader reader = new JsonFileReader(
+                Collections.<CloudFile>emptyList(), null);
+        reader.setParseCache(parseCache);
+
+        JSONObject first = reader.process(newFile("a.json",
+                "{\"name\":\"Run\"}")).getJsonObject();
+        first.put("name", "Walk");
+        JSONObject second = reader.process(newFile("b.json",
+                "{\"name\":\"Run\"}")).getJsonObject();
+        reader.process(newFile("c.json", "{\"name\":\"Swim\"}"));
+
+        assertNotSame(first, second);
+        assertEquals("Run", second.getString("name"));
+        assertEquals(2, parseCache.size());
+    }
+
+    /**
+     * Write a JSON file with the given content.
+     *
+     * @param name    File name
+     * @param content File content
+     * @return Cloud file of the written file
+     * @throws IOException The file cannot be written
+     */
+    private CloudFile newFile(final String name, final String content)
+            throws IOException {
+        File file = folder.newFile(name);
+        try (OutputStream out = new FileOutputStream(file)) {
+            out.write(content.getBytes("UTF-8"));
+        }
+        return new CloudFile(name, file, 0, file.lastModified());
+    }
+}
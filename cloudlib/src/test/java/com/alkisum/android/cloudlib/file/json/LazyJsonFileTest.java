@@ -0,0 +1,101 @@
+package com.alkisum.android.cloudlib.file.json;
+
+import com.alkisum.android.cloudlib.file.CloudFile;
+
+import org.json.JSONObject;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for LazyJsonFile.
+ *
+ * @author Alkisum
+ * @version 1.9
+ * @since 1.9
+ */
+public class LazyJsonFileTest {
+
+    /**
+     * Temporary folder holding the test files.
+     */
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * The file is parsed on first access only.
+     *
+     * @throws IOException The file cannot be written or parsed
+     */
+    @Test
+    public final void contentIsParsedOnFirstAccess() throws IOException {
+        LazyJsonFile jsonFile = new LazyJsonFile(
+                newFile("{\"name\":\"Run\",\"distance\":42}"),
+                new JsonFileParser());
+
+        assertFalse(jsonFile.isLoaded());
+        JSONObject jsonObject = jsonFile.getJsonObject();
+        assertEquals("Run", jsonObject.optString("name"));
+        assertEquals(42, jsonObject.optInt("distance"));
+        assertTrue(jsonFile.isLoaded());
+        assertSame(jsonObject, jsonFile.loadData());
+    }
+
+    /**
+     * The JSON object given by getJsonObject() is kept in memory, its changes
+     * are seen by the next accesses without parsing the file again.
+     *
+     * @throws Exception The file cannot be written or parsed
+     */
+    @Test
+    public final void jsonObjectIsPinnedOnceTaken() throws Exception {
+        CloudFile file = newFile("{\"name\":\"Run\"}");
+        LazyJsonFile jsonFile = new LazyJsonFile(file, new JsonFileParser());
+        jsonFile.getJsonObject().put("name", "Walk");
+        assertTrue(file.getFile().delete());
+
+        assertTrue(jsonFile.isLoaded());
+        assertEquals("Walk", jsonFile.getJsonObject().getString("name"));
+        JSONObject data = jsonFile.loadData();
+        assertEquals("Walk", data.getString("name"));
+    }
+
+    /**
+     * Invalid content is reported when the file is accessed.
+     *
+     * @throws IOException The file cannot be parsed
+     */
+    @Test(expected = IOException.class)
+    public final void invalidContentFailsOnLoad() throws IOException {
+        LazyJsonFile jsonFile = new LazyJsonFile(newFile("not json"),
+                new JsonFileParser());
+
+        jsonFile.loadData();
+    }
+
+    /**
+     * Write a JSON file with the given content.
+     *
+     * @param content File content
+     * @return Cloud file of the written file
+     * @throws IOException The file cannot be written
+     */
+    private CloudFile newFile(final String content) throws IOException {
+        File file = folder.newFile("file.json");
+        try (OutputStream out = new FileOutputStream(file)) {
+            out.write(content.getBytes(Charset.forName("UTF-8")));
+        }
+        return new CloudFile(file.getName(), file, 0, file.lastModified());
+    }
+}
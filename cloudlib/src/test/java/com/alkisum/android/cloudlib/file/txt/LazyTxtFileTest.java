@@ -0,0 +1,119 @@
+package com.alkisum.android.cloudlib.file.txt;
+
+import com.alkisum.android.cloudlib.file.CloudFile;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for LazyTxtFile.
+ *
+ * @author Alkisum
+ * @version 1.9
+ * @since 1.9
+ */
+public class LazyTxtFileTest {
+
+    /**
+     * Content of the test files, with non-ASCII characters and mixed line
+     * separators.
+     */
+    private static final String CONTENT = "Première ligne\r\nZweite Zeile\n"
+            + "третья строка\rlast line";
+
+    /**
+     * Temporary folder holding the test files.
+     */
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * The content is read on first access only, as it is in the file.
+     *
+     * @throws IOException The file cannot be written or read
+     */
+    @Test
+    public final void contentIsReadOnFirstAccess() throws IOException {
+        LazyTxtFile txtFile = new LazyTxtFile(newFile(CONTENT),
+                TxtContentReader.DEFAULT_MAP_THRESHOLD);
+
+        assertFalse(txtFile.isLoaded());
+        String content = txtFile.getContent();
+        assertEquals(CONTENT, content);
+        assertTrue(txtFile.isLoaded());
+        assertSame(content, txtFile.loadContent());
+    }
+
+    /**
+     * The content of a file mapped into memory is the same as the content of
+     * a file read into a buffer.
+     *
+     * @throws IOException The file cannot be written or read
+     */
+    @Test
+    public final void mappedContentIsDecoded() throws IOException {
+        LazyTxtFile txtFile = new LazyTxtFile(newFile(CONTENT), 0);
+
+        assertEquals(CONTENT, txtFile.loadContent());
+    }
+
+    /**
+     * A file that cannot be read is reported when its content is accessed.
+     *
+     * @throws IOException The file cannot be created
+     */
+    @Test(expected = IOException.class)
+    public final void missingFileFailsOnLoad() throws IOException {
+        File file = folder.newFile("missing.txt");
+        LazyTxtFile txtFile = new LazyTxtFile(
+                new CloudFile(file.getName(), file, 0, 0),
+                TxtContentReader.DEFAULT_MAP_THRESHOLD);
+        assertTrue(file.delete());
+
+        txtFile.loadContent();
+    }
+
+    /**
+     * A file that cannot be read is reported as an illegal state by
+     * getContent().
+     *
+     * @throws IOException The file cannot be created
+     */
+    @Test(expected = IllegalStateException.class)
+    public final void missingFileFailsOnGetContent() throws IOException {
+        File file = folder.newFile("missing.txt");
+        LazyTxtFile txtFile = new LazyTxtFile(
+                new CloudFile(file.getName(), file, 0, 0),
+                TxtContentReader.DEFAULT_MAP_THRESHOLD);
+        assertTrue(file.delete());
+
+        txtFile.getContent();
+    }
+
+    /**
+     * Write a TXT file with the given content.
+     *
+     * @param content File content
+     * @return Cloud file of the written file
+     * @throws IOException The file cannot be written
+     */
+    private CloudFile newFile(final String content) throws IOException {
+        File file = folder.newFile("file.txt");
+        try (OutputStream out = new FileOutputStream(file)) {
+            out.write(content.getBytes(Charset.forName("UTF-8")));
+        }
+        return new CloudFile(file.getName(), file, 0, file.lastModified());
+    }
+}
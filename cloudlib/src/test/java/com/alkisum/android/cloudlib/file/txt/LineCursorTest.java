@@ -0,0 +1,87 @@
+package com.alkisum.android.cloudlib.file.txt;
+
+import org.junit.Test;
+
+import java.util.NoSuchElementException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for LineCursor.
+ *
+ * @author Alkisum
+ * @version 1.9
+ * @since 1.9
+ */
+public class LineCursorTest {
+
+    /**
+     * The lines are split on each kind of separator, the separators being
+     * dropped.
+     */
+    @Test
+    public final void nextSplitsOnEachSeparator() {
+        LineCursor cursor = new LineCursor("first\nsecond\r\nthird\rfourth");
+
+        assertEquals("first", cursor.next());
+        assertEquals("second", cursor.next());
+        assertEquals("third", cursor.next());
+        assertEquals("fourth", cursor.next());
+        assertFalse(cursor.hasNext());
+    }
+
+    /**
+     * Consecutive separators give empty lines, a separator ending the text
+     * does not.
+     */
+    @Test
+    public final void nextKeepsEmptyLines() {
+        LineCursor cursor = new LineCursor("a\n\r\n\rb\r\n");
+
+        assertEquals("a", cursor.next());
+        assertEquals("", cursor.next());
+        assertEquals("", cursor.next());
+        assertEquals("b", cursor.next());
+        assertFalse(cursor.hasNext());
+    }
+
+    /**
+     * A position saved with getPosition() is restored with seek().
+     */
+    @Test
+    public final void seekRestoresPosition() {
+        LineCursor cursor = new LineCursor("first\r\nsecond\nthird");
+        cursor.next();
+        int position = cursor.getPosition();
+        assertEquals(7, position);
+        assertEquals("second", cursor.next());
+        assertEquals("third", cursor.next());
+
+        cursor.seek(position);
+        assertTrue(cursor.hasNext());
+        assertEquals("second", cursor.next());
+        cursor.seek(2);
+        assertEquals("rst", cursor.next());
+    }
+
+    /**
+     * A position outside of the text is rejected.
+     */
+    @Test(expected = IndexOutOfBoundsException.class)
+    public final void seekRejectsPositionOutOfText() {
+        new LineCursor("text").seek(5);
+    }
+
+    /**
+     * No line is read from an empty text.
+     */
+    @Test(expected = NoSuchElementException.class)
+    public final void nextFailsOnEmptyText() {
+        LineCursor cursor = new LineCursor("");
+
+        assertFalse(cursor.hasNext());
+        cursor.next();
+    }
+}
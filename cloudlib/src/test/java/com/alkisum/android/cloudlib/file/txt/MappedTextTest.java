@@ -0,0 +1,146 @@
+package com.alkisum.android.cloudlib.file.txt;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests for MappedText.
+ *
+ * @author Alkisum
+ * @version 1.9
+ * @since 1.9
+ */
+public class MappedTextTest {
+
+    /**
+     * Characters encoded on one to four bytes, repeated to build texts of
+     * several blocks whose limits fall inside the byte sequences.
+     */
+    private static final String PATTERN = "aé€😀\n";
+
+    /**
+     * Temporary folder holding the test files.
+     */
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * The text of a file of several blocks is decoded as a whole.
+     *
+     * @throws IOException The file cannot be written or mapped
+     */
+    @Test
+    public final void toStringDecodesAllBlocks() throws IOException {
+        String expected = repeat(50000);
+        MappedText text = MappedText.map(write(expected), 1);
+
+        assertEquals(expected.length(), text.length());
+        assertEquals(expected, text.toString());
+    }
+
+    /**
+     * The characters are read from any block, in any order, while a single
+     * decoded block is cached.
+     *
+     * @throws IOException The file cannot be written or mapped
+     */
+    @Test
+    public final void charAtReadsAnyBlock() throws IOException {
+        String expected = repeat(50000);
+        MappedText text = MappedText.map(write(expected), 1);
+
+        int[] indexes = {expected.length() - 1, 0, 70000, 3, 150000, 70001,
+                expected.length() / 2};
+        for (int index : indexes) {
+            assertEquals(expected.charAt(index), text.charAt(index));
+        }
+    }
+
+    /**
+     * A range spanning several blocks is read from the text.
+     *
+     * @throws IOException The file cannot be written or mapped
+     */
+    @Test
+    public final void subSequenceSpansBlocks() throws IOException {
+        String expected = repeat(50000);
+        MappedText text = MappedText.map(write(expected), 2);
+
+        CharSequence slice = text.subSequence(60000, 200000);
+        assertEquals(expected.substring(60000, 200000), slice.toString());
+        assertEquals(expected.charAt(60010), slice.charAt(10));
+        assertEquals(expected.substring(60100, 60200),
+                slice.subSequence(100, 200).toString());
+    }
+
+    /**
+     * An empty file gives an empty text.
+     *
+     * @throws IOException The file cannot be written or mapped
+     */
+    @Test
+    public final void emptyFileGivesEmptyText() throws IOException {
+        MappedText text = MappedText.map(write(""));
+
+        assertEquals(0, text.length());
+        assertEquals("", text.toString());
+    }
+
+    /**
+     * An index outside of the text is rejected.
+     *
+     * @throws IOException The file cannot be written or mapped
+     */
+    @Test(expected = IndexOutOfBoundsException.class)
+    public final void charAtRejectsIndexOutOfText() throws IOException {
+        MappedText text = MappedText.map(write(PATTERN));
+
+        text.charAt(PATTERN.length());
+    }
+
+    /**
+     * At least one block must be cached.
+     *
+     * @throws IOException The file cannot be written
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public final void mapRejectsEmptyCache() throws IOException {
+        MappedText.map(write(PATTERN), 0);
+    }
+
+    /**
+     * @param count Number of times the pattern is repeated
+     * @return Text made of the repeated pattern
+     */
+    private static String repeat(final int count) {
+        StringBuilder sb = new StringBuilder(PATTERN.length() * count);
+        for (int i = 0; i < count; i++) {
+            sb.append(PATTERN);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Write a UTF-8 file with the given content.
+     *
+     * @param content File content
+     * @return Written file
+     * @throws IOException The file cannot be written
+     */
+    private File write(final String content) throws IOException {
+        File file = folder.newFile();
+        try (OutputStream out = new FileOutputStream(file)) {
+            out.write(content.getBytes(Charset.forName("UTF-8")));
+        }
+        return file;
+    }
+}
@@ -0,0 +1,88 @@
+package com.alkisum.android.cloudlib.file.txt;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for TxtFileWriter.
+ *
+ * @author Alkisum
+ * @version 1.9
+ * @since 1.9
+ */
+public class TxtFileWriterTest {
+
+    /**
+     * Temporary folder holding the cache directory.
+     */
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * Cache directory.
+     */
+    private File cacheDir;
+
+    /**
+     * Writer of the tested files.
+     */
+    private TxtFileWriter writer;
+
+    /**
+     * Create the cache directory and the writer.
+     *
+     * @throws IOException The directory cannot be created
+     */
+    @Before
+    public final void setUp() throws IOException {
+        cacheDir = folder.newFolder("cache");
+        writer = new TxtFileWriter(cacheDir,
+                Collections.<TxtFile>emptyList(), null);
+    }
+
+    /**
+     * The content is written into a temporary file of the cache directory.
+     *
+     * @throws Exception The file cannot be written
+     */
+    @Test
+    public final void contentIsWritten() throws Exception {
+        TxtFile txtFile = writer.process(new TxtFile("file", "content"));
+
+        assertTrue(txtFile.getFile().exists());
+        assertEquals(cacheDir, txtFile.getFile().getParentFile());
+        assertEquals(7, txtFile.getFile().length());
+    }
+
+    /**
+     * The temporary file of a file that cannot be written is deleted.
+     *
+     * @throws Exception The file has been written
+     */
+    @Test
+    public final void failedFileIsDeleted() throws Exception {
+        TxtFile txtFile = new TxtFile("file", null) {
+
+            @Override
+            public String getContent() {
+                throw new IllegalStateException("Cannot read the content");
+            }
+        };
+        try {
+            writer.process(txtFile);
+            fail("The file has been written");
+        } catch (IllegalStateException e) {
+            assertEquals(0, cacheDir.list().length);
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package com.alkisum.android.cloudlib.net.nextcloud;
+
+import com.owncloud.android.lib.resources.files.model.RemoteFile;
+
+import org.junit.Test;
+import org.kxml2.io.KXmlParser;
+import org.xmlpull.v1.XmlPullParser;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.LinkedList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for the multistatus parser of StreamingReadFolderRemoteOperation.
+ *
+ * @author Alkisum
+ * @version 1.9
+ * @since 1.9
+ */
+public class StreamingReadFolderRemoteOperationTest {
+
+    /**
+     * Path of the WebDAV endpoint.
+     */
+    private static final String DAV_PATH = "/remote.php/webdav";
+
+    /**
+     * Remote path of the listed folder.
+     */
+    private static final String FOLDER = "/Activities/";
+
+    /**
+     * Multistatus response of the listed folder: the folder itself, a file
+     * with a 404 propstat, a file with an encoded name and an invalid
+     * length, and a subfolder.
+     */
+    private static final String RESPONSE = "<?xml version=\"1.0\"?>"
+            + "<d:multistatus xmlns:d=\"DAV:\">"
+            + "<d:response>"
+            + "<d:href>/remote.php/webdav/Activities/</d:href>"
+            + "<d:propstat><d:prop>"
+            + "<d:resourcetype><d:collection/></d:resourcetype>"
+            + "</d:prop><d:status>HTTP/1.1 200 OK</d:status></d:propstat>"
+            + "</d:response>"
+            + "<d:response>"
+            + "<d:href>/remote.php/webdav/Activities/run.json</d:href>"
+            + "<d:propstat><d:prop>"
+            + "<d:getcontentlength>999</d:getcontentlength>"
+            + "<d:resourcetype><d:collection/></d:resourcetype>"
+            + "</d:prop><d:status>HTTP/1.1 404 Not Found</d:status>"
+            + "</d:propstat>"
+            + "<d:propstat><d:prop>"
+            + "<d:getetag>\"5d9f1a\"</d:getetag>"
+            + "<d:getcontentlength>120</d:getcontentlength>"
+            + "<d:getcontenttype>application/json</d:getcontenttype>"
+            + "<d:getlastmodified>Tue, 01 Oct 2019 10:00:00 GMT"
+            + "</d:getlastmodified>"
+            + "<d:resourcetype/>"
+            + "</d:prop><d:status>HTTP/1.1 200 OK</d:status></d:propstat>"
+            + "</d:response>"
+            + "<d:response>"
+            + "<d:href>/remote.php/webdav/Activities/long%20run+1.json"
+            + "</d:href>"
+            + "<d:propstat><d:prop>"
+            + "<d:getcontentlength>unknown</d:getcontentlength>"
+            + "<d:resourcetype/>"
+            + "</d:prop><d:status>HTTP/1.1 200 OK</d:status></d:propstat>"
+            + "</d:response>"
+            + "<d:response>"
+            + "<d:href>/remote.php/webdav/Activities/2019/</d:href>"
+            + "<d:propstat><d:prop>"
+            + "<d:resourcetype><d:collection/></d:resourcetype>"
+            + "</d:prop><d:status>HTTP/1.1 200 OK</d:status></d:propstat>"
+            + "</d:response>"
+            + "</d:multistatus>";
+
+    /**
+     * The files are listed with their properties, the folder itself and the
+     * subfolders are not.
+     *
+     * @throws Exception The response cannot be parsed
+     */
+    @Test
+    public final void filesAreListed() throws Exception {
+        List<RemoteFile> files = new ArrayList<>();
+        Deque<String> folders = new LinkedList<>();
+        parse(true, files, folders);
+
+        assertEquals(2, files.size());
+        RemoteFile run = files.get(0);
+        assertEquals("/Activities/run.json", run.getRemotePath());
+        assertEquals("5d9f1a", run.getEtag());
+        assertEquals(120, run.getLength());
+        assertEquals("application/json", run.getMimeType());
+        assertEquals(1569924000000L, run.getModifiedTimestamp());
+        assertEquals(Collections.singletonList("/Activities/2019/"),
+                new ArrayList<>(folders));
+    }
+
+    /**
+     * The href is decoded as a path and an invalid length is read as an
+     * unknown length.
+     *
+     * @throws Exception The response cannot be parsed
+     */
+    @Test
+    public final void invalidLengthIsUnknown() throws Exception {
+        List<RemoteFile> files = new ArrayList<>();
+        parse(true, files, new LinkedList<>());
+
+        RemoteFile longRun = files.get(1);
+        assertEquals("/Activities/long run+1.json", longRun.getRemotePath());
+        assertEquals(0, longRun.getLength());
+        assertNull(longRun.getEtag());
+    }
+
+    /**
+     * The subfolders are not read in non-recursive mode.
+     *
+     * @throws Exception The response cannot be parsed
+     */
+    @Test
+    public final void subfoldersAreSkipped() throws Exception {
+        List<RemoteFile> files = new ArrayList<>();
+        Deque<String> folders = new LinkedList<>();
+        parse(false, files, folders);
+
+        assertEquals(2, files.size());
+        assertTrue(folders.isEmpty());
+    }
+
+    /**
+     * Parse the response of the listed folder.
+     *
+     * @param recursive true to read the subfolders
+     * @param files     List where to add the listed files
+     * @param folders   Folders to read
+     * @throws Exception The response cannot be parsed
+     */
+    private static void parse(final boolean recursive,
+                              final List<RemoteFile> files,
+                              final Deque<String> folders) throws Exception {
+        StreamingReadFolderRemoteOperation operation =
+                new StreamingReadFolderRemoteOperation(FOLDER, recursive,
+                        null, (op, remoteFile) -> files.add(remoteFile));
+        XmlPullParser parser = new KXmlParser();
+        parser.setFeature(XmlPullParser.FEATURE_PROCESS_NAMESPACES, true);
+        parser.setInput(new StringReader(RESPONSE));
+        operation.parse(parser, FOLDER, DAV_PATH, folders);
+    }
+}
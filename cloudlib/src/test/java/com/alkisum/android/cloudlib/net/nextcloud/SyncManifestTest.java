@@ -0,0 +1,168 @@
+package com.alkisum.android.cloudlib.net.nextcloud;
+
+import com.owncloud.android.lib.resources.files.model.RemoteFile;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for SyncManifest.
+ *
+ * @author Alkisum
+ * @version 1.9
+ * @since 1.9
+ */
+public class SyncManifestTest {
+
+    /**
+     * Temporary folder holding the manifest.
+     */
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * File storing the manifest.
+     */
+    private File file;
+
+    /**
+     * Set the manifest file, which does not exist yet.
+     */
+    @Before
+    public final void setUp() {
+        file = new File(folder.getRoot(), "manifest.json");
+    }
+
+    /**
+     * A file is unchanged as long as its ETag is the same.
+     */
+    @Test
+    public final void etagDetectsChanges() {
+        SyncManifest manifest = SyncManifest.load(file);
+        assertFalse(manifest.isUnchanged(newFile("/a.json", "etag1", 10, 1)));
+        manifest.put(newFile("/a.json", "etag1", 10, 1));
+
+        assertTrue(manifest.contains("/a.json"));
+        assertTrue(manifest.isUnchanged(newFile("/a.json", "etag1", 20, 2)));
+        assertFalse(manifest.isUnchanged(newFile("/a.json", "etag2", 10, 1)));
+    }
+
+    /**
+     * Without ETag, a file is unchanged as long as its size and modified
+     * time are the same.
+     */
+    @Test
+    public final void sizeAndTimeDetectChangesWithoutEtag() {
+        SyncManifest manifest = SyncManifest.load(file);
+        manifest.put(newFile("/a.json", null, 10, 1));
+
+        assertTrue(manifest.isUnchanged(newFile("/a.json", null, 10, 1)));
+        assertFalse(manifest.isUnchanged(newFile("/a.json", null, 11, 1)));
+        assertFalse(manifest.isUnchanged(newFile("/a.json", null, 10, 2)));
+    }
+
+    /**
+     * The hash is given only while the ETag is the same, and discarded when
+     * the entry is replaced without hash.
+     */
+    @Test
+    public final void hashFollowsEtag() {
+        SyncManifest manifest = SyncManifest.load(file);
+        manifest.put(newFile("/a.json", "etag1", 10, 1), "hash1");
+
+        assertEquals("hash1", manifest.getHash("/a.json", "etag1"));
+        assertNull(manifest.getHash("/a.json", "etag2"));
+        assertNull(manifest.getHash("/a.json", null));
+        manifest.put(newFile("/a.json", "etag1", 10, 1));
+        assertNull(manifest.getHash("/a.json", "etag1"));
+    }
+
+    /**
+     * The removed paths are the entries of the folder that are not listed
+     * anymore.
+     */
+    @Test
+    public final void removedPathsAreComputed() {
+        SyncManifest manifest = SyncManifest.load(file);
+        manifest.put(newFile("/folder/a.json", "a", 1, 1));
+        manifest.put(newFile("/folder/b.json", "b", 1, 1));
+        manifest.put(newFile("/other/c.json", "c", 1, 1));
+        manifest.remove("/folder/b.json");
+        manifest.put(newFile("/folder/d.json", "d", 1, 1));
+
+        List<String> removedPaths = manifest.getRemotePaths("/folder/");
+        Collections.sort(removedPaths);
+        assertEquals(Arrays.asList("/folder/a.json", "/folder/d.json"),
+                removedPaths);
+        removedPaths.removeAll(Collections.singletonList("/folder/d.json"));
+        assertEquals(Collections.singletonList("/folder/a.json"),
+                removedPaths);
+    }
+
+    /**
+     * The entries saved are loaded by a new manifest.
+     *
+     * @throws IOException The manifest cannot be saved
+     */
+    @Test
+    public final void entriesSurviveReload() throws IOException {
+        SyncManifest manifest = SyncManifest.load(file);
+        manifest.put(newFile("/a.json", "etag1", 10, 1), "hash1");
+        manifest.put(newFile("/b.json", null, 20, 2));
+        manifest.save();
+
+        SyncManifest reloaded = SyncManifest.load(file);
+        assertTrue(reloaded.isUnchanged(newFile("/a.json", "etag1", 10, 1)));
+        assertEquals("hash1", reloaded.getHash("/a.json", "etag1"));
+        assertTrue(reloaded.isUnchanged(newFile("/b.json", null, 20, 2)));
+        assertFalse(new File(file.getPath() + ".tmp").exists());
+    }
+
+    /**
+     * A corrupted manifest gives an empty manifest.
+     *
+     * @throws IOException The manifest cannot be written
+     */
+    @Test
+    public final void corruptedManifestIsEmpty() throws IOException {
+        try (OutputStream out = new FileOutputStream(file)) {
+            out.write("{\"/a.json\":".getBytes("UTF-8"));
+        }
+
+        SyncManifest manifest = SyncManifest.load(file);
+        assertFalse(manifest.contains("/a.json"));
+        assertTrue(manifest.getRemotePaths("/").isEmpty());
+    }
+
+    /**
+     * @param remotePath Remote path
+     * @param etag       ETag, null if unknown
+     * @param length     Size in bytes
+     * @param modified   Modified timestamp
+     * @return Remote file
+     */
+    private static RemoteFile newFile(final String remotePath,
+                                      final String etag, final long length,
+                                      final long modified) {
+        RemoteFile remoteFile = new RemoteFile(remotePath);
+        remoteFile.setEtag(etag);
+        remoteFile.setLength(length);
+        remoteFile.setModifiedTimestamp(modified);
+        return remoteFile;
+    }
+}